@@ -0,0 +1,338 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// ================== SECONDARY ACCOUNT INDEXES ==================
+// Lookups by phone number, email and holder name without scanning the accounts.
+// Accounts are stored by the numeric part of their account number (an int),
+// not by reference, which keeps the indexes small.
+//
+//   phone / email - concurrent hash maps from the normalised value to the
+//                   accounts that use it (families often share a phone)
+//   holder name   - a radix trie (edges carry whole runs of characters) holding
+//                   every word start of the normalised name, so "sha" finds
+//                   "Rahul Sharma"; guarded by a read-write lock so searches
+//                   run in parallel
+final class AccountIndex {
+    private static final int[] NO_IDS = new int[0];
+
+    private final ConcurrentHashMap<String, int[]> byPhone = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, int[]> byEmail = new ConcurrentHashMap<>();
+    private final NameTrie byName = new NameTrie();
+
+    void add(Account account) {
+        int id = idOf(account.getAccountNumber());
+        if (id < 0) {
+            return;
+        }
+        addId(byPhone, normalizePhone(account.getPhoneNumber()), id);
+        addId(byEmail, normalizeEmail(account.getEmail()), id);
+        byName.insertWords(normalizeName(account.getAccountHolderName()), id);
+    }
+
+    // Callers hold the account's monitor, so two updates of one account cannot interleave
+    void phoneChanged(Account account, String oldPhone) {
+        int id = idOf(account.getAccountNumber());
+        removeId(byPhone, normalizePhone(oldPhone), id);
+        addId(byPhone, normalizePhone(account.getPhoneNumber()), id);
+    }
+
+    void emailChanged(Account account, String oldEmail) {
+        int id = idOf(account.getAccountNumber());
+        removeId(byEmail, normalizeEmail(oldEmail), id);
+        addId(byEmail, normalizeEmail(account.getEmail()), id);
+    }
+
+    void nameChanged(Account account, String oldName) {
+        int id = idOf(account.getAccountNumber());
+        byName.removeWords(normalizeName(oldName), id);
+        byName.insertWords(normalizeName(account.getAccountHolderName()), id);
+    }
+
+    // ---------------- Lookups (return account numbers) ----------------
+
+    List<String> findByPhone(String phone) {
+        return format(byPhone.getOrDefault(normalizePhone(phone), NO_IDS), Integer.MAX_VALUE);
+    }
+
+    List<String> findByEmail(String email) {
+        return format(byEmail.getOrDefault(normalizeEmail(email), NO_IDS), Integer.MAX_VALUE);
+    }
+
+    // Accounts with a name word starting with 'prefix' (several words match as one phrase)
+    List<String> findByNamePrefix(String prefix, int limit) {
+        String key = normalizeName(prefix);
+        if (key.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<Integer> ids = new LinkedHashSet<>();
+        byName.search(key, limit, ids);
+        List<String> numbers = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            numbers.add(AccountNumberAllocator.format(id));
+        }
+        return numbers;
+    }
+
+    // ---------------- Normalisation ----------------
+
+    // Digits only, so "+91 98765-43210" and "919876543210" match
+    static String normalizePhone(String phone) {
+        StringBuilder digits = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+    static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Lower case, single spaces between words
+    static String normalizeName(String name) {
+        return String.join(" ", name.trim().toLowerCase(Locale.ROOT).split("\\s+"));
+    }
+
+    private static int idOf(String accountNumber) {
+        return AccountNumberAllocator.parse(accountNumber, 0);
+    }
+
+    private static List<String> format(int[] ids, int limit) {
+        List<String> numbers = new ArrayList<>(Math.min(ids.length, limit));
+        for (int i = 0; i < ids.length && i < limit; i++) {
+            numbers.add(AccountNumberAllocator.format(ids[i]));
+        }
+        return numbers;
+    }
+
+    private static void addId(ConcurrentHashMap<String, int[]> index, String key, int id) {
+        if (key.isEmpty()) return;
+        index.compute(key, (k, ids) -> ids == null ? new int[] {id} : withId(ids, id));
+    }
+
+    private static void removeId(ConcurrentHashMap<String, int[]> index, String key, int id) {
+        index.computeIfPresent(key, (k, ids) -> {
+            int[] remaining = withoutId(ids, id);
+            return remaining.length == 0 ? null : remaining;
+        });
+    }
+
+    private static int[] withId(int[] ids, int id) {
+        for (int existing : ids) {
+            if (existing == id) return ids;
+        }
+        int[] grown = Arrays.copyOf(ids, ids.length + 1);
+        grown[ids.length] = id;
+        return grown;
+    }
+
+    private static int[] withoutId(int[] ids, int id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                int[] shrunk = new int[ids.length - 1];
+                System.arraycopy(ids, 0, shrunk, 0, i);
+                System.arraycopy(ids, i + 1, shrunk, i, ids.length - i - 1);
+                return shrunk;
+            }
+        }
+        return ids;
+    }
+
+    // ================== RADIX TRIE FOR NAME PREFIXES ==================
+    private static final class NameTrie {
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private static final class Node {
+            char[] label;                    // characters on the edge into this node
+            Node[] children = NO_CHILDREN;   // sorted by first label character
+            int[] ids = NO_IDS;              // accounts whose key ends exactly here
+
+            Node(char[] label) {
+                this.label = label;
+            }
+        }
+
+        private final Node root = new Node(new char[0]);
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        // Indexes the whole name and every later word start ("rahul kumar sharma",
+        // "kumar sharma", "sharma")
+        void insertWords(String name, int id) {
+            lock.writeLock().lock();
+            try {
+                for (int start = 0; start < name.length(); start = nextWord(name, start)) {
+                    insert(name, start, id);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void removeWords(String name, int id) {
+            lock.writeLock().lock();
+            try {
+                for (int start = 0; start < name.length(); start = nextWord(name, start)) {
+                    remove(name, start, id);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void search(String prefix, int limit, Set<Integer> out) {
+            lock.readLock().lock();
+            try {
+                Node node = root;
+                int i = 0;
+                while (i < prefix.length()) {
+                    Node child = child(node, prefix.charAt(i));
+                    if (child == null) return;
+                    int matched = match(child.label, prefix, i);
+                    if (i + matched == prefix.length()) {
+                        node = child; // the prefix ends on (or inside) this edge
+                        break;
+                    }
+                    if (matched < child.label.length) return;
+                    node = child;
+                    i += matched;
+                }
+                collect(node, limit, out);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private static int nextWord(String name, int start) {
+            int space = name.indexOf(' ', start);
+            return space < 0 ? name.length() : space + 1;
+        }
+
+        private void insert(String key, int from, int id) {
+            Node node = root;
+            int i = from;
+            while (i < key.length()) {
+                Node child = child(node, key.charAt(i));
+                if (child == null) {
+                    Node leaf = new Node(key.substring(i).toCharArray());
+                    leaf.ids = new int[] {id};
+                    addChild(node, leaf);
+                    return;
+                }
+                int matched = match(child.label, key, i);
+                if (matched < child.label.length) {
+                    // Split the edge: node -> middle (common part) -> child (rest)
+                    Node middle = new Node(Arrays.copyOf(child.label, matched));
+                    child.label = Arrays.copyOfRange(child.label, matched, child.label.length);
+                    middle.children = new Node[] {child};
+                    replaceChild(node, child, middle);
+                    child = middle;
+                }
+                node = child;
+                i += matched;
+            }
+            node.ids = withId(node.ids, id);
+        }
+
+        private void remove(String key, int from, int id) {
+            Node parent = null;
+            Node node = root;
+            int i = from;
+            while (i < key.length()) {
+                Node child = child(node, key.charAt(i));
+                if (child == null) return;
+                int matched = match(child.label, key, i);
+                if (matched < child.label.length) return;
+                parent = node;
+                node = child;
+                i += matched;
+            }
+            node.ids = withoutId(node.ids, id);
+            if (parent != null && node.ids.length == 0 && node.children.length == 0) {
+                removeChild(parent, node);
+            }
+        }
+
+        private static void collect(Node node, int limit, Set<Integer> out) {
+            for (int id : node.ids) {
+                if (out.size() >= limit) return;
+                out.add(id);
+            }
+            for (Node child : node.children) {
+                if (out.size() >= limit) return;
+                collect(child, limit, out);
+            }
+        }
+
+        // Length of the common prefix of 'label' and key[from..]
+        private static int match(char[] label, String key, int from) {
+            int n = Math.min(label.length, key.length() - from);
+            int i = 0;
+            while (i < n && label[i] == key.charAt(from + i)) {
+                i++;
+            }
+            return i;
+        }
+
+        private static Node child(Node node, char first) {
+            Node[] children = node.children;
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char c = children[mid].label[0];
+                if (c < first) {
+                    low = mid + 1;
+                } else if (c > first) {
+                    high = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+
+        private static void addChild(Node node, Node child) {
+            Node[] children = node.children;
+            int at = 0;
+            while (at < children.length && children[at].label[0] < child.label[0]) {
+                at++;
+            }
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, at);
+            grown[at] = child;
+            System.arraycopy(children, at, grown, at + 1, children.length - at);
+            node.children = grown;
+        }
+
+        private static void replaceChild(Node node, Node old, Node replacement) {
+            for (int i = 0; i < node.children.length; i++) {
+                if (node.children[i] == old) {
+                    node.children[i] = replacement;
+                    return;
+                }
+            }
+        }
+
+        private static void removeChild(Node node, Node child) {
+            Node[] children = node.children;
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] == child) {
+                    Node[] shrunk = new Node[children.length - 1];
+                    System.arraycopy(children, 0, shrunk, 0, i);
+                    System.arraycopy(children, i + 1, shrunk, i, children.length - i - 1);
+                    node.children = shrunk.length == 0 ? NO_CHILDREN : shrunk;
+                    return;
+                }
+            }
+        }
+    }
+}
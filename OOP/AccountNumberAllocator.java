@@ -0,0 +1,76 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+// ================== BLOCK-ALLOCATED ACCOUNT NUMBERS ==================
+// A thread's first few numbers come straight from one shared AtomicLong, one at
+// a time. A thread that keeps creating accounts (bulk onboarding) then claims
+// blocks of numbers and hands them out locally, touching the shared counter once
+// per block instead of once per account. Short-lived threads - a BankServer
+// session, a virtual thread - never get a block, so they leave no gaps; a block
+// left unfinished when a bulk thread ends is simply a gap. Formatting ("ACC" +
+// 8 digits) is done by hand, not String.format.
+final class AccountNumberAllocator {
+    static final String PREFIX = "ACC";
+    static final int DIGITS = 8;
+    static final int FIRST_NUMBER = 10001;
+    static final int MAX_NUMBER = 99_999_999;
+
+    private static final int BLOCK_SIZE = Math.max(1, Integer.getInteger("bank.accountBlockSize", 64));
+    // Numbers a thread takes one at a time before it is given blocks
+    private static final int UNBLOCKED_NUMBERS = 16;
+    private static final AtomicLong NEXT_BLOCK = new AtomicLong(FIRST_NUMBER);
+    private static final ThreadLocal<long[]> BLOCK = ThreadLocal.withInitial(() -> new long[3]);
+
+    private AccountNumberAllocator() {}
+
+    static String next() {
+        long[] block = BLOCK.get(); // {next, end, numbers taken one at a time}
+        long number;
+        if (block[0] < block[1]) {
+            number = block[0]++;
+        } else if (block[2] < UNBLOCKED_NUMBERS || BLOCK_SIZE == 1) {
+            block[2]++;
+            number = NEXT_BLOCK.getAndIncrement();
+        } else {
+            number = NEXT_BLOCK.getAndAdd(BLOCK_SIZE);
+            block[0] = number + 1;
+            block[1] = number + BLOCK_SIZE;
+        }
+        if (number > MAX_NUMBER) {
+            throw new IllegalStateException("Account numbers exhausted");
+        }
+        return format((int) number);
+    }
+
+    // Keeps numbers restored from the journal out of future blocks.
+    // Call it before new accounts are created (i.e. during recovery).
+    static void reserve(String accountNumber) {
+        int number = parse(accountNumber, 0);
+        if (number < 0) {
+            return;
+        }
+        NEXT_BLOCK.accumulateAndGet(number + 1L, Math::max);
+    }
+
+    static String format(int number) {
+        char[] text = {'A', 'C', 'C', '0', '0', '0', '0', '0', '0', '0', '0'};
+        for (int i = text.length - 1; i >= PREFIX.length() && number > 0; i--) {
+            text[i] = (char) ('0' + number % 10);
+            number /= 10;
+        }
+        return new String(text);
+    }
+
+    // "ACC00010042" starting at 'from' -> 10042, or -1 if it is not a standard account number
+    static int parse(String text, int from) {
+        if (text.length() - from != PREFIX.length() + DIGITS || !text.startsWith(PREFIX, from)) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from + PREFIX.length(); i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,222 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// ================== OFF-HEAP ACCOUNT TABLE ==================
+// Storage for the hot numeric fields of very many accounts outside the Java heap,
+// so the collector never scans or copies them. Each account owns one fixed-stride
+// row (one cache line) in a segment of direct memory:
+//
+//   0 balance | 8 daily limit | 16 overdraft used | 24 day start | 32 day end
+//   40 withdrawn today | 48 holder name | 52 phone | 56 email | 60 active flag
+//
+// The name, phone and email columns are references into a StringDictionary, so
+// the contact details are not kept as String objects either. Segments are added
+// as rows are allocated and are never moved; a row is only written while its
+// account's monitor is held. Balance and the active flag are read without the
+// monitor, so those two use volatile access.
+//
+// Used by Bank when -Dbank.storage=offheap; see Account.moveOffHeap.
+final class AccountTable {
+    static final int STRIDE = 64;
+    static final int BALANCE = 0;
+    static final int DAILY_LIMIT = 8;
+    static final int OVERDRAFT_USED = 16;
+    static final int DAY_START = 24;
+    static final int DAY_END = 32;
+    static final int WITHDRAWN = 40;
+    static final int HOLDER_NAME = 48;
+    static final int PHONE = 52;
+    static final int EMAIL = 56;
+    static final int ACTIVE = 60;
+
+    private static final int SEGMENT_SHIFT = 16; // 65536 rows = 4 MB per segment
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    private static final VarHandle LONGS =
+        MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS =
+        MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private volatile ByteBuffer[] segments = new ByteBuffer[0];
+    private int rows; // guarded by "this"
+    private final StringDictionary strings = new StringDictionary();
+
+    // The table for a new Bank, or null when accounts keep their fields on the heap
+    static AccountTable fromSystemProperties() {
+        return "offheap".equalsIgnoreCase(System.getProperty("bank.storage", "heap")) ? new AccountTable() : null;
+    }
+
+    synchronized int allocate() {
+        int row = rows++;
+        if ((row >>> SEGMENT_SHIFT) == segments.length) {
+            ByteBuffer[] grown = Arrays.copyOf(segments, segments.length + 1);
+            // Aligned, so the view var handles can use volatile access
+            grown[segments.length] = ByteBuffer.allocateDirect((STRIDE << SEGMENT_SHIFT) + 7).alignedSlice(8);
+            segments = grown;
+        }
+        return row;
+    }
+
+    synchronized int size() {
+        return rows;
+    }
+
+    // Direct memory reserved for rows, in bytes
+    long reservedBytes() {
+        return (long) segments.length * (STRIDE << SEGMENT_SHIFT);
+    }
+
+    // ---------------- Field access ----------------
+
+    long getLong(int row, int field) {
+        return (long) LONGS.get(segment(row), offset(row, field));
+    }
+
+    void putLong(int row, int field, long value) {
+        LONGS.set(segment(row), offset(row, field), value);
+    }
+
+    long getLongVolatile(int row, int field) {
+        return (long) LONGS.getVolatile(segment(row), offset(row, field));
+    }
+
+    void putLongVolatile(int row, int field, long value) {
+        LONGS.setVolatile(segment(row), offset(row, field), value);
+    }
+
+    boolean getFlagVolatile(int row, int field) {
+        return (int) INTS.getVolatile(segment(row), offset(row, field)) != 0;
+    }
+
+    void putFlagVolatile(int row, int field, boolean value) {
+        INTS.setVolatile(segment(row), offset(row, field), value ? 1 : 0);
+    }
+
+    String getString(int row, int field) {
+        return strings.get((int) INTS.getAcquire(segment(row), offset(row, field)));
+    }
+
+    // Released after the bytes are in the dictionary, so readers of the row see them
+    void putString(int row, int field, String value) {
+        INTS.setRelease(segment(row), offset(row, field), strings.intern(value));
+    }
+
+    private ByteBuffer segment(int row) {
+        return segments[row >>> SEGMENT_SHIFT];
+    }
+
+    private static int offset(int row, int field) {
+        return (row & SEGMENT_MASK) * STRIDE + field;
+    }
+
+    // ================== COMPACT STRING DICTIONARY ==================
+    // Append-only arena of UTF-8 entries in 1 MB pages: a 2-byte length, then the
+    // bytes. An id is the entry's position in the arena. Equal strings share one
+    // entry (many holders share a name), found through an open-addressing table
+    // of ids, so millions of strings cost a few large arrays and no objects.
+    // Replaced values stay in the arena; contact details rarely change.
+    static final class StringDictionary {
+        private static final int PAGE_SHIFT = 20;
+        private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+        static final int MAX_BYTES = 0xFFFF;
+
+        private volatile byte[][] pages = { new byte[PAGE_SIZE] };
+        private int end;                      // next free position, guarded by "this"
+        private int[] slots = new int[1024];  // id + 1 per slot, 0 = empty; guarded by "this"
+        private int count;                    // guarded by "this"
+
+        synchronized int intern(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_BYTES) {
+                throw new IllegalArgumentException("String too long for the dictionary: " + bytes.length + " bytes");
+            }
+            int hash = hash(bytes);
+            int mask = slots.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int entry = slots[slot];
+                if (entry == 0) {
+                    break;
+                }
+                if (matches(entry - 1, bytes)) {
+                    return entry - 1;
+                }
+            }
+            int id = append(bytes);
+            if (++count * 2 > slots.length) {
+                rehash();
+            }
+            insert(slots, id, hash);
+            return id;
+        }
+
+        String get(int id) {
+            byte[] page = pages[id >>> PAGE_SHIFT];
+            int at = id & (PAGE_SIZE - 1);
+            int length = ((page[at] & 0xFF) << 8) | (page[at + 1] & 0xFF);
+            return new String(page, at + 2, length, StandardCharsets.UTF_8);
+        }
+
+        private int append(byte[] bytes) {
+            int needed = bytes.length + 2;
+            if ((end & (PAGE_SIZE - 1)) + needed > PAGE_SIZE) {
+                end = (end + PAGE_SIZE - 1) & ~(PAGE_SIZE - 1); // entries never cross a page
+            }
+            if ((end >>> PAGE_SHIFT) == pages.length) {
+                byte[][] grown = Arrays.copyOf(pages, pages.length + 1);
+                grown[pages.length] = new byte[PAGE_SIZE];
+                pages = grown;
+            }
+            int id = end;
+            byte[] page = pages[id >>> PAGE_SHIFT];
+            int at = id & (PAGE_SIZE - 1);
+            page[at] = (byte) (bytes.length >>> 8);
+            page[at + 1] = (byte) bytes.length;
+            System.arraycopy(bytes, 0, page, at + 2, bytes.length);
+            end += needed;
+            return id;
+        }
+
+        private boolean matches(int id, byte[] bytes) {
+            byte[] page = pages[id >>> PAGE_SHIFT];
+            int at = id & (PAGE_SIZE - 1);
+            int length = ((page[at] & 0xFF) << 8) | (page[at + 1] & 0xFF);
+            return length == bytes.length
+                && Arrays.equals(page, at + 2, at + 2 + length, bytes, 0, length);
+        }
+
+        private void rehash() {
+            int[] grown = new int[slots.length * 2];
+            for (int entry : slots) {
+                if (entry != 0) {
+                    insert(grown, entry - 1, hashAt(entry - 1));
+                }
+            }
+            slots = grown;
+        }
+
+        private static void insert(int[] table, int id, int hash) {
+            int mask = table.length - 1;
+            int slot = hash & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+
+        private int hashAt(int id) {
+            byte[] page = pages[id >>> PAGE_SHIFT];
+            int at = id & (PAGE_SIZE - 1);
+            int length = ((page[at] & 0xFF) << 8) | (page[at + 1] & 0xFF);
+            return hash(Arrays.copyOfRange(page, at + 2, at + 2 + length));
+        }
+
+        private static int hash(byte[] bytes) {
+            int h = Arrays.hashCode(bytes);
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,520 @@
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ================== CORRECTNESS CHECKS ==================
+// Runnable checks for the behaviour the batch, journal and dedupe changes rely
+// on, kept next to BankBenchmark for the same reason (no build tool, no test
+// runner). Each scenario prints PASS / FAIL lines; the exit status is 1 if any
+// check failed.
+//
+//   batch    - netting lets opposite transfers through that would fail one by
+//              one; a rejected payer takes its credits away from the next one;
+//              a batch cut before its credits replays none of its debits
+//   replay   - a reopened journal gives the same balances; a torn last group is
+//              dropped and appending after it still replays; an as-of restore
+//              skips records stamped after the cut-off
+//   monthEnd - a journal cut between a month-end posting and its period mark
+//              replays neither, so the resumed run posts exactly once
+//   numbers  - accounts opened from many one-shot threads (one per server
+//              session) get dense account numbers, no per-thread blocks
+//   interest - interest on balance-days near Long.MAX_VALUE / rate is exact, and
+//              a result beyond a long is refused rather than wrapped
+//   dedupe   - concurrent retries of one key move the money once, also while
+//              the cache rotates its generations every few keys
+//   events   - with the event queue full behind a stuck subscriber, the audit
+//              log still gets every event and the drops are counted
+//
+// Usage: java BankChecks [scenario]   (default: all)
+public class BankChecks {
+    private static PrintStream out;
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        String scenario = args.length > 0 ? args[0] : "all";
+        out = System.out;
+        // Account operations still print on some paths; keep the report readable
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            if (scenario.equals("all") || scenario.equals("batch")) {
+                batchNetting();
+            }
+            if (scenario.equals("all") || scenario.equals("replay")) {
+                journalReplay();
+            }
+            if (scenario.equals("all") || scenario.equals("monthEnd")) {
+                monthEndCut();
+            }
+            if (scenario.equals("all") || scenario.equals("numbers")) {
+                oneShotAccountNumbers();
+            }
+            if (scenario.equals("all") || scenario.equals("interest")) {
+                interestOverflow();
+            }
+            if (scenario.equals("all") || scenario.equals("dedupe")) {
+                concurrentDedupe();
+            }
+            if (scenario.equals("all") || scenario.equals("events")) {
+                eventBackpressure();
+            }
+        } finally {
+            System.setOut(out);
+        }
+        out.println(failures == 0 ? "All checks passed" : failures + " check(s) failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // ---------------- Scenarios ----------------
+
+    // Savings accounts: Rs. 1,000 minimum balance, Rs. 50,000 daily limit
+    private static void batchNetting() throws Exception {
+        out.println("== batch: netting and cascading rejection ==");
+        File file = File.createTempFile("checks", ".journal");
+        try {
+            Map<String, Long> applied;
+            String a, b, c, d, e;
+            try (TransactionJournal journal = openJournal(file)) {
+                Bank bank = new Bank("Check Bank", "CHCK0000001", journal);
+                a = open(bank, 0, 6_000).getAccountNumber();
+                b = open(bank, 1, 6_000).getAccountNumber();
+                c = open(bank, 2, 2_000).getAccountNumber();
+                d = open(bank, 3, 2_000).getAccountNumber();
+                e = open(bank, 4, 2_000).getAccountNumber();
+
+                TransferBatch batch = new TransferBatch();
+                batch.add(a, b, 20_000);  // row 0: only possible netted against row 1
+                batch.add(b, a, 19_000);  // row 1
+                batch.add(d, c, 5_000);   // row 2: d cannot pay
+                batch.add(c, e, 4_000);   // row 3: c can only pay with row 2's credit
+                TransferBatch.Result result = bank.applyBatch(batch);
+
+                check("netted pair applied", result.applied == 2, result.toString());
+                int rejectedRows = 0;
+                for (TransferBatch.Rejection rejection : result.rejections) {
+                    rejectedRows |= 1 << rejection.row;
+                }
+                check("rows 2 and 3 rejected", rejectedRows == 0b1100 && result.rejections.size() == 2,
+                      result.rejections.toString());
+                check("net balances", rupees(bank, a) == 5_000 && rupees(bank, b) == 7_000,
+                      rupees(bank, a) + " / " + rupees(bank, b));
+                check("rejected payers untouched", rupees(bank, c) == 2_000 && rupees(bank, d) == 2_000
+                      && rupees(bank, e) == 2_000,
+                      rupees(bank, c) + " / " + rupees(bank, d) + " / " + rupees(bank, e));
+                applied = balances(bank);
+            }
+            // A second batch to an account that only receives, cut at the receiver's
+            // credit: the payer's debit is already written but must not replay alone
+            long cutAt;
+            try (TransactionJournal journal = openJournal(file)) {
+                Bank replayed = new Bank("Check Bank", "CHCK0000001", journal);
+                check("batch replays to the same balances", applied.equals(balances(replayed)),
+                      balances(replayed).toString());
+                Account receiver = open(replayed, 5, 2_000);
+                applied = balances(replayed);
+                TransferBatch batch = new TransferBatch();
+                batch.add(a, receiver.getAccountNumber(), 500);
+                replayed.applyBatch(batch);
+                cutAt = receiver.getJournalOffset();  // its BATCH_CREDIT
+            }
+            try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+                raw.seek(cutAt);
+                raw.writeInt(0);
+            }
+            try (TransactionJournal journal = openJournal(file)) {
+                Bank replayed = new Bank("Check Bank", "CHCK0000001", journal);
+                check("batch cut before its credits replays nothing", applied.equals(balances(replayed)),
+                      balances(replayed).toString());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void journalReplay() throws Exception {
+        out.println("== replay: journal equivalence ==");
+        File file = File.createTempFile("checks", ".journal");
+        try {
+            Map<String, Long> live;
+            String[] numbers = new String[20];
+            try (TransactionJournal journal = openJournal(file)) {
+                Bank bank = new Bank("Check Bank", "CHCK0000001", journal);
+                Account[] accounts = new Account[numbers.length];
+                for (int i = 0; i < accounts.length; i++) {
+                    accounts[i] = open(bank, i, 50_000);
+                    numbers[i] = accounts[i].getAccountNumber();
+                }
+                Random random = new Random(1);
+                for (int i = 0; i < 2_000; i++) {
+                    Account from = accounts[random.nextInt(accounts.length)];
+                    Account to = accounts[random.nextInt(accounts.length)];
+                    if (from != to) {
+                        from.tryTransfer(to, 1 + random.nextInt(300));
+                    }
+                    if (i % 250 == 0) {
+                        from.tryWithdraw(1 + random.nextInt(100));
+                        to.deposit(1 + random.nextInt(100));
+                    }
+                }
+                live = balances(bank);
+            }
+
+            // Reopen, add one more transfer, then break the record that commits it
+            long groupStart;
+            long groupEnd;
+            try (TransactionJournal journal = openJournal(file)) {
+                Bank bank = new Bank("Check Bank", "CHCK0000001", journal);
+                check("reopened journal replays the same balances", live.equals(balances(bank)), "");
+                groupStart = journal.position();
+                bank.findAccount(numbers[0]).tryTransfer(bank.findAccount(numbers[1]), 100);
+                groupEnd = journal.position();
+            }
+            try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+                raw.seek(groupEnd - 3);  // inside the COMMIT record's payload
+                int flipped = raw.read() ^ 0x5a;
+                raw.seek(groupEnd - 3);
+                raw.write(flipped);
+            }
+
+            long deposited;
+            try (TransactionJournal journal = openJournal(file)) {
+                Bank bank = new Bank("Check Bank", "CHCK0000001", journal);
+                check("torn transfer dropped as a whole", live.equals(balances(bank)), "");
+                // The group's other records are intact but never committed; new records follow them
+                check("journal resumes at the torn record",
+                      journal.position() > groupStart && journal.position() < groupEnd,
+                      journal.position() + " not in (" + groupStart + ", " + groupEnd + ")");
+                Account account = bank.findAccount(numbers[2]);
+                account.deposit(10);
+                deposited = account.getBalancePaise();
+            }
+            try (TransactionJournal journal = openJournal(file)) {
+                Bank bank = new Bank("Check Bank", "CHCK0000001", journal);
+                check("record appended after a torn tail replays",
+                      bank.findAccount(numbers[2]).getBalancePaise() == deposited, "");
+            }
+        } finally {
+            file.delete();
+        }
+        asOfRestore();
+    }
+
+    // Records are filtered by their own timestamps, not by position in the file
+    private static void asOfRestore() throws Exception {
+        File file = File.createTempFile("checks", ".journal");
+        BankClock previous = BankClock.current();
+        BankClock.Manual clock = new BankClock.Manual(1_000_000L);
+        BankClock.setCurrent(clock);
+        try (TransactionJournal journal = openJournal(file)) {
+            Bank bank = new Bank("Check Bank", "CHCK0000001", journal);
+            Account early = open(bank, 0, 5_000);            // opened at 1,000 s
+            clock.set(3_000_000L);
+            open(bank, 1, 5_000);                             // opened at 3,000 s
+            early.setActive(false);                           // marks at 3,000 s
+            early.setActive(true);
+            clock.set(2_000_000L);
+            early.deposit(100);                               // appended last, stamped 2,000 s
+
+            Bank asOf = Bank.restoreAsOf("Check Bank", "CHCK0000001", journal, null, 2_500_000L);
+            Account restored = asOf.findAccount(early.getAccountNumber());
+            check("as-of restore skips the later account", asOf.getTotalAccounts() == 1,
+                  asOf.getTotalAccounts() + " account(s)");
+            check("as-of restore keeps the earlier deposit",
+                  restored != null && restored.getBalancePaise() == 510_000, "");
+        } finally {
+            BankClock.setCurrent(previous);
+            file.delete();
+        }
+    }
+
+    // Cuts the journal right before the period mark, as a crash between the two writes
+    // would, then resumes: the posting must not survive without its mark
+    private static void monthEndCut() throws Exception {
+        out.println("== monthEnd: crash between posting and period mark ==");
+        int period = 202610;
+        BankClock previous = BankClock.current();
+        BankClock.Manual clock = new BankClock.Manual(previous.millis());
+        BankClock.setCurrent(clock);
+        try {
+            for (boolean interest : new boolean[] {false, true}) {
+                String phase = interest ? "interest" : "charges";
+                File file = File.createTempFile("checks", ".journal");
+                try {
+                    String number;
+                    long before;
+                    long posted;
+                    long cutAt;
+                    try (TransactionJournal journal = openJournal(file)) {
+                        Bank bank = new Bank("Check Bank", "CHCK0000001", journal);
+                        Account account = open(bank, 0, 100_000);
+                        number = account.getAccountNumber();
+                        for (int i = 0; i < 8; i++) {
+                            account.deposit(10);  // past the free transactions, so charges are due
+                        }
+                        clock.advance(30L * 24 * 60 * 60 * 1000);
+                        before = account.getBalancePaise();
+                        posted = interest ? account.postMonthEndInterest(period)
+                                          : account.postMonthEndCharges(period);
+                        check(phase + " posted", posted > 0, Money.format(posted));
+                        cutAt = account.getJournalOffset();  // the period mark
+                    }
+                    try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+                        raw.seek(cutAt);
+                        raw.writeInt(0);
+                    }
+                    try (TransactionJournal journal = openJournal(file)) {
+                        Bank bank = new Bank("Check Bank", "CHCK0000001", journal);
+                        Account account = bank.findAccount(number);
+                        check(phase + " without its mark not replayed", account.getBalancePaise() == before,
+                              Money.format(account.getBalancePaise()) + " vs " + Money.format(before));
+                        long again = interest ? account.postMonthEndInterest(period)
+                                              : account.postMonthEndCharges(period);
+                        long expected = interest ? before + posted : before - posted;
+                        check("resumed " + phase + " posted once", again == posted
+                              && account.getBalancePaise() == expected,
+                              Money.format(account.getBalancePaise()) + " vs " + Money.format(expected));
+                        check("rerun skips the account", (interest ? account.postMonthEndInterest(period)
+                              : account.postMonthEndCharges(period)) == Account.MONTH_END_ALREADY_POSTED, "");
+                    }
+                } finally {
+                    file.delete();
+                }
+            }
+        } finally {
+            BankClock.setCurrent(previous);
+        }
+    }
+
+    // Thread per account, a few running at a time, as BankServer sessions do
+    private static void oneShotAccountNumbers() throws Exception {
+        out.println("== numbers: accounts opened from one-shot threads ==");
+        int accounts = 5_000;
+        int concurrent = 8;
+        int[] numbers = new int[accounts];
+        AtomicLong errors = new AtomicLong();
+        for (int first = 0; first < accounts; first += concurrent) {
+            Thread[] sessions = new Thread[Math.min(concurrent, accounts - first)];
+            for (int t = 0; t < sessions.length; t++) {
+                int slot = first + t;
+                sessions[t] = new Thread(() -> {
+                    Account account = Bank.newAccount("Check Holder " + slot, "9876500000",
+                                                      "holder@example.com", "SAVINGS", 1_000);
+                    numbers[slot] = AccountNumberAllocator.parse(account.getAccountNumber(), 0);
+                    if (numbers[slot] < 0) {
+                        errors.incrementAndGet();
+                    }
+                });
+                sessions[t].start();
+            }
+            for (Thread session : sessions) {
+                session.join();
+            }
+        }
+        Arrays.sort(numbers);
+        int gaps = 0;
+        for (int i = 1; i < accounts; i++) {
+            gaps += numbers[i] == numbers[i - 1] + 1 ? 0 : 1;
+        }
+        check("every number parsed", errors.get() == 0, errors.get() + " bad number(s)");
+        check("numbers dense", gaps == 0 && numbers[accounts - 1] - numbers[0] == accounts - 1,
+              gaps + " gap(s), span " + (numbers[accounts - 1] - numbers[0] + 1) + " for " + accounts);
+    }
+
+    // Savings interest is balance-days x 450 bps / (10000 x 365); the product
+    // passes Long.MAX_VALUE long before the interest itself does
+    private static void interestOverflow() {
+        out.println("== interest: balance-days near Long.MAX_VALUE / rate ==");
+        long rateBps = 450;
+        long denominator = 10000L * InterestAccrual.DAYS_PER_YEAR;
+        long edge = Long.MAX_VALUE / rateBps;
+        for (long balanceDays : new long[] {edge - 1, edge, edge + 1, edge * 7, Long.MAX_VALUE, -edge - 1,
+                                            Long.MIN_VALUE + 1}) {
+            long interest = Money.multiplyRounded(balanceDays, rateBps, denominator);
+            check("interest on " + balanceDays + " balance-days",
+                  interest == expectedInterest(balanceDays, rateBps, denominator), interest + "");
+        }
+        for (long half : new long[] {1825, -1825, 1824, -1824}) {
+            long rounded = Money.multiplyRounded(half, 1, 3650);
+            check("rounding of " + half + "/3650", rounded == expectedInterest(half, 1, 3650), rounded + "");
+        }
+        try {
+            long wrapped = Money.multiplyRounded(Long.MAX_VALUE, Long.MAX_VALUE, 2);
+            check("result beyond a long refused", false, wrapped + "");
+        } catch (ArithmeticException e) {
+            check("result beyond a long refused", true, "");
+        }
+
+        // The same through an accrual: a month at a balance just past the edge
+        long balance = edge / 30 + 1;
+        InterestAccrual accrual = new InterestAccrual();
+        long day = 24L * 60 * 60 * 1000;
+        long start = 1_700_000_000_000L;
+        accrual.onBalance(start, balance);
+        long interest = accrual.interest(start + 30 * day, rateBps);
+        check("a month's interest at Rs. " + Money.format(balance), interest
+              == expectedInterest(accrual.balanceDays(start + 30 * day), rateBps, denominator), interest + "");
+    }
+
+    // value x numerator / denominator rounded half away from zero, in BigInteger
+    private static long expectedInterest(long value, long numerator, long denominator) {
+        BigDecimal exact = new BigDecimal(BigInteger.valueOf(value).multiply(BigInteger.valueOf(numerator)))
+            .divide(BigDecimal.valueOf(denominator), 0, RoundingMode.HALF_UP);
+        return exact.longValueExact();
+    }
+
+    private static void concurrentDedupe() throws Exception {
+        out.println("== dedupe: concurrent retries ==");
+        int threads = 4;
+        int keys = 2_000;
+
+        // Every thread retries each key at once through the bank
+        Bank bank = new Bank("Check Bank", "CHCK0000001");
+        Account from = open(bank, 0, 100_000);
+        Account to = open(bank, 1, 1_000);
+        AtomicInteger executed = new AtomicInteger();
+        race(threads, keys, key -> {
+            TransferReceipt receipt = bank.transfer("retry-" + key, from.getAccountNumber(),
+                                                    to.getAccountNumber(), 1);
+            // The others are replays, or IN_PROGRESS while the first call runs
+            if (receipt.status == TransferReceipt.Status.COMPLETED && !receipt.replayed) {
+                executed.incrementAndGet();
+            }
+        });
+        check("each key executed once", executed.get() == keys, executed.get() + " of " + keys);
+        check("money moved once per key", to.getBalancePaise() == (1_000L + keys) * 100,
+              Money.format(to.getBalancePaise()));
+
+        // A cache small enough to rotate every four keys
+        IdempotencyCache cache = new IdempotencyCache(BankClock.current(), 3_600_000L,
+                                                      2L * IdempotencyCache.ENTRY_BYTES * 4);
+        AtomicInteger[] runs = new AtomicInteger[keys];
+        for (int i = 0; i < keys; i++) {
+            runs[i] = new AtomicInteger();
+        }
+        race(threads, keys, key -> cache.execute("ACC1", "key" + key, "ACC2", 100, () -> {
+            runs[key].incrementAndGet();
+            Thread.yield();  // widen the window for a rotation
+            return new TransferReceipt("key" + key, TransferReceipt.Status.COMPLETED, null, false);
+        }));
+        int repeated = 0;
+        for (AtomicInteger run : runs) {
+            repeated += run.get() > 1 ? 1 : 0;
+        }
+        check("no key executed twice across rotations", repeated == 0, repeated + " of " + keys);
+
+        TransferReceipt reused = cache.execute("ACC1", "key" + (keys - 1), "ACC3", 100, () -> null);
+        check("key reused for another transfer refused",
+              reused.status != TransferReceipt.Status.COMPLETED, reused.status.toString());
+    }
+
+    private static void eventBackpressure() throws Exception {
+        out.println("== events: full queue behind a stuck subscriber ==");
+        File file = File.createTempFile("checks", ".audit");
+        EventBus bus = new EventBus(1, 1, 50);
+        CountDownLatch stuck = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger console = new AtomicInteger();
+        try (AuditLog audit = new AuditLog(file)) {
+            bus.subscribe(batch -> {
+                console.addAndGet(batch.size());
+                stuck.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            bus.subscribe(audit);
+
+            int events = 5;
+            for (int i = 0; i < events; i++) {
+                bus.publish(new BankEvent(BankEvent.Type.DEPOSITED, "ACC" + i, 100, 100, 0, null, i));
+                if (i == 0) {
+                    stuck.await(); // the dispatcher holds event 0, the queue has room for one more
+                }
+            }
+            release.countDown();
+            bus.flush();
+
+            List<String> lines = Files.readAllLines(file.toPath());
+            check("audit log has every event", lines.size() == events, lines.size() + " of " + events);
+            check("drops counted", bus.dropped() == events - 2 && bus.deliveredDirectly() == events - 2,
+                  bus.dropped() + " dropped, " + bus.deliveredDirectly() + " delivered directly");
+            check("lossy subscriber saw only queued events", console.get() == 2, console.get() + " of " + events);
+        } finally {
+            file.delete();
+        }
+    }
+
+    // ---------------- Helpers ----------------
+
+    interface KeyTask {
+        void run(int key) throws Exception;
+    }
+
+    // Runs task(key) on every thread for each key in turn, all threads starting a key together
+    private static void race(int threads, int keys, KeyTask task) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        AtomicLong errors = new AtomicLong();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    for (int key = 0; key < keys; key++) {
+                        barrier.await();
+                        task.run(key);
+                    }
+                } catch (Exception e) {
+                    errors.incrementAndGet();
+                    barrier.reset();
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        check("workers finished without errors", errors.get() == 0, errors.get() + " error(s)");
+    }
+
+    private static TransactionJournal openJournal(File file) throws Exception {
+        return new TransactionJournal(file, TransactionJournal.Durability.GROUP, 2, 64);
+    }
+
+    private static Account open(Bank bank, int n, double balance) throws Exception {
+        return bank.createAccount("Check Holder " + n, "98765" + String.format("%05d", n),
+                                  "holder" + n + "@example.com", "SAVINGS", balance);
+    }
+
+    private static long rupees(Bank bank, String accountNumber) {
+        return bank.findAccount(accountNumber).getBalancePaise() / 100;
+    }
+
+    private static Map<String, Long> balances(Bank bank) {
+        Map<String, Long> balances = new TreeMap<>();
+        for (Account account : bank.getAccounts()) {
+            balances.put(account.getAccountNumber(), account.getBalancePaise());
+        }
+        return balances;
+    }
+
+    private static void check(String name, boolean passed, String detail) {
+        if (!passed) {
+            failures++;
+        }
+        out.println("  " + (passed ? "PASS " : "FAIL ") + name + (passed || detail.isEmpty() ? "" : ": " + detail));
+    }
+}
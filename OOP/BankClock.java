@@ -0,0 +1,82 @@
+// ================== INJECTABLE CLOCK ==================
+// Every time-dependent rule of an Account (withdrawal windows, transaction
+// timestamps, interest accrual) reads the time from its BankClock. Accounts take
+// BankClock.current() when they are created; tests and replay tools install a
+// Manual clock first and then move time by hand, which makes runs deterministic.
+abstract class BankClock {
+    private static volatile BankClock current = new CachedSystemClock();
+
+    abstract long millis();
+
+    static BankClock current() {
+        return current;
+    }
+
+    // Clock used by accounts created from now on
+    static void setCurrent(BankClock clock) {
+        current = clock;
+    }
+
+    // ---------------- System time, cached ----------------
+
+    // Serves a volatile read of a value a daemon thread refreshes every
+    // -Dbank.clockTickMillis (default 1), so hot paths never call into the OS.
+    // Monotonic: a wall-clock step backwards is held until time catches up.
+    private static final class CachedSystemClock extends BankClock {
+        private static final long TICK_MILLIS = Math.max(1, Long.getLong("bank.clockTickMillis", 1));
+
+        private volatile long now = System.currentTimeMillis();
+        private volatile boolean started;
+
+        @Override
+        long millis() {
+            if (!started) {
+                start();
+            }
+            return now;
+        }
+
+        private synchronized void start() {
+            if (started) return;
+            Thread ticker = new Thread(() -> {
+                while (true) {
+                    long wall = System.currentTimeMillis();
+                    if (wall > now) {
+                        now = wall;
+                    }
+                    try {
+                        Thread.sleep(TICK_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "bank-clock");
+            ticker.setDaemon(true);
+            ticker.start();
+            started = true;
+        }
+    }
+
+    // ---------------- Manual time ----------------
+
+    static final class Manual extends BankClock {
+        private volatile long now;
+
+        Manual(long startMillis) {
+            this.now = startMillis;
+        }
+
+        @Override
+        long millis() {
+            return now;
+        }
+
+        void set(long millis) {
+            now = millis;
+        }
+
+        synchronized void advance(long millis) {
+            now += millis;
+        }
+    }
+}
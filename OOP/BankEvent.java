@@ -0,0 +1,61 @@
+// ================== DOMAIN EVENTS ==================
+// Published by the user-facing Account operations (deposit, withdraw, transfer,
+// overdraft, interest, charges) instead of printing. What the numeric fields mean
+// depends on the type:
+//
+//   amount       - the amount of the operation, in paise
+//   balanceAfter - the account balance once the operation finished, in paise
+//   detail       - WITHDRAWN: remaining daily limit; OVERDRAFT_USED / OVERDRAFT_REPAID:
+//                  overdraft now used; OVERDRAFT_LIMIT_EXCEEDED: overdraft still
+//                  available; INTEREST_CREDITED: annual rate in basis points
+//   counterparty - the other account of a transfer, otherwise null
+//
+// TRANSACTION_RECORDED is published for every history entry, including those
+// written by month-end and charges; its detail is the TransactionTypes code.
+final class BankEvent {
+    enum Type {
+        DEPOSITED,
+        WITHDRAWN,
+        ACCOUNT_INACTIVE,
+        DAILY_LIMIT_EXCEEDED,
+        INSUFFICIENT_BALANCE,
+        TRANSFER_STARTED,
+        TRANSFERRED,
+        TRANSFER_FAILED,             // the withdrawal was made and then reverted
+        TRANSFER_TARGET_INACTIVE,    // nothing was moved
+        OVERDRAFT_USED,
+        OVERDRAFT_LIMIT_EXCEEDED,
+        OVERDRAFT_REPAID,
+        OVERDRAFT_REPAYMENT_REJECTED,
+        INTEREST_CREDITED,
+        TRANSACTION_CHARGES_APPLIED,
+        MAINTENANCE_CHARGED,
+        MAINTENANCE_NOT_COLLECTED,
+        TRANSACTION_RECORDED
+    }
+
+    final Type type;
+    final String accountNumber;
+    final long amount;
+    final long balanceAfter;
+    final long detail;
+    final String counterparty;
+    final long epochMillis;
+
+    BankEvent(Type type, String accountNumber, long amount, long balanceAfter, long detail,
+              String counterparty, long epochMillis) {
+        this.type = type;
+        this.accountNumber = accountNumber;
+        this.amount = amount;
+        this.balanceAfter = balanceAfter;
+        this.detail = detail;
+        this.counterparty = counterparty;
+        this.epochMillis = epochMillis;
+    }
+
+    @Override
+    public String toString() {
+        return epochMillis + "\t" + type + "\t" + accountNumber + "\t" + amount + "\t" + balanceAfter
+             + "\t" + detail + "\t" + (counterparty != null ? counterparty : "-");
+    }
+}
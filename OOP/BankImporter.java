@@ -0,0 +1,396 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// ================== STREAMING BULK ACCOUNT IMPORT ==================
+// Reads account records from a CSV or binary file and registers them with a
+// Bank without console output. One reader thread streams the file in batches
+// into a small bounded queue; worker threads parse, validate and create the
+// accounts in parallel. Because the queue is bounded, memory use does not
+// depend on the file size. Rejected rows go to a side file with their row
+// number and the reason. A worker that fails outright keeps emptying the queue,
+// so the reader never blocks on it, and the import then ends with that failure.
+//
+// CSV:    name,phone,email,type,initialDeposit   (type SAVINGS/CURRENT or 1/2;
+//         an optional header row is skipped; fields may be "quoted")
+// Binary: int magic 'BNKI', then per record: UTF name, UTF phone, UTF email,
+//         byte type (1 = savings, 2 = current), long initial deposit in paise
+class BankImporter {
+    static final int BINARY_MAGIC = 0x424E4B49; // "BNKI"
+
+    private static final int BATCH_SIZE = 1024;
+
+    private final Bank bank;
+    private final int workers;
+
+    public BankImporter(Bank bank) {
+        this(bank, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BankImporter(Bank bank, int workers) {
+        this.bank = bank;
+        this.workers = Math.max(1, workers);
+    }
+
+    // ================== IMPORT REPORT ==================
+    static final class Report {
+        final long accepted;
+        final long rejected;
+        final double seconds;
+
+        Report(long accepted, long rejected, double seconds) {
+            this.accepted = accepted;
+            this.rejected = rejected;
+            this.seconds = seconds;
+        }
+
+        double accountsPerSecond() {
+            return seconds > 0 ? accepted / seconds : accepted;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Imported %d account(s), rejected %d row(s) in %.2f s (%.0f accounts/second)",
+                                 accepted, rejected, seconds, accountsPerSecond());
+        }
+    }
+
+    // One input record; CSV rows arrive raw and are split by the worker
+    private static final class Row {
+        final long number;
+        String raw;
+        String name;
+        String phone;
+        String email;
+        String type;
+        long depositPaise;
+
+        Row(long number) {
+            this.number = number;
+        }
+    }
+
+    private static final List<Row> END_OF_INPUT = new ArrayList<>();
+
+    // ---------------- Entry points ----------------
+
+    public Report importCsv(File input, File rejects) throws IOException, InterruptedException {
+        try (BufferedReader reader = Files.newBufferedReader(input.toPath(), StandardCharsets.UTF_8)) {
+            return run(rejects, queue -> {
+                long number = 0;
+                List<Row> batch = new ArrayList<>(BATCH_SIZE);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    number++;
+                    if (line.isBlank() || (number == 1 && line.toLowerCase().startsWith("name,"))) {
+                        continue;
+                    }
+                    Row row = new Row(number);
+                    row.raw = line;
+                    batch.add(row);
+                    if (batch.size() == BATCH_SIZE) {
+                        queue.put(batch);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    queue.put(batch);
+                }
+            });
+        }
+    }
+
+    public Report importBinary(File input, File rejects) throws IOException, InterruptedException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(input), 1 << 16))) {
+            if (in.readInt() != BINARY_MAGIC) {
+                throw new IOException("Not an account import file: " + input);
+            }
+            return run(rejects, queue -> {
+                long number = 0;
+                List<Row> batch = new ArrayList<>(BATCH_SIZE);
+                while (true) {
+                    Row row = new Row(number + 1);
+                    try {
+                        row.name = in.readUTF();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    row.phone = in.readUTF();
+                    row.email = in.readUTF();
+                    row.type = String.valueOf(in.readByte());
+                    row.depositPaise = in.readLong();
+                    number++;
+                    batch.add(row);
+                    if (batch.size() == BATCH_SIZE) {
+                        queue.put(batch);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    queue.put(batch);
+                }
+            });
+        }
+    }
+
+    // Writes records in the binary import format (handy for exporting from other systems)
+    static void writeBinaryRecord(DataOutputStream out, String name, String phone, String email,
+                                  boolean savings, long depositPaise) throws IOException {
+        out.writeUTF(name);
+        out.writeUTF(phone);
+        out.writeUTF(email);
+        out.writeByte(savings ? 1 : 2);
+        out.writeLong(depositPaise);
+    }
+
+    // ---------------- Pipeline ----------------
+
+    private interface Producer {
+        void produce(BlockingQueue<List<Row>> queue) throws IOException, InterruptedException;
+    }
+
+    private Report run(File rejects, Producer producer) throws IOException, InterruptedException {
+        BlockingQueue<List<Row>> queue = new ArrayBlockingQueue<>(workers * 2);
+        AtomicLong accepted = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long start = System.nanoTime();
+
+        try (Writer rejectLog = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(rejects), StandardCharsets.UTF_8))) {
+            Thread[] pool = new Thread[workers];
+            for (int i = 0; i < workers; i++) {
+                pool[i] = new Thread(() -> work(queue, rejectLog, accepted, rejected, failure), "import-worker-" + i);
+                pool[i].start();
+            }
+
+            try {
+                producer.produce(queue);
+            } finally {
+                for (int i = 0; i < workers; i++) {
+                    queue.put(END_OF_INPUT);
+                }
+                for (Thread worker : pool) {
+                    worker.join();
+                }
+            }
+        }
+
+        if (failure.get() != null) {
+            throw new IOException("Import failed after " + accepted.get() + " account(s): " + failure.get(),
+                                  failure.get());
+        }
+        return new Report(accepted.get(), rejected.get(), (System.nanoTime() - start) / 1e9);
+    }
+
+    private void work(BlockingQueue<List<Row>> queue, Writer rejectLog, AtomicLong accepted, AtomicLong rejected,
+                      AtomicReference<Throwable> failure) {
+        try {
+            process(queue, rejectLog, accepted, rejected);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+            drain(queue);
+        }
+    }
+
+    // Keeps taking batches after a failure, so the reader and END_OF_INPUT still get through
+    private static void drain(BlockingQueue<List<Row>> queue) {
+        try {
+            while (queue.take() != END_OF_INPUT) {
+                // discarded
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void process(BlockingQueue<List<Row>> queue, Writer rejectLog, AtomicLong accepted, AtomicLong rejected)
+            throws InterruptedException {
+        while (true) {
+            List<Row> batch = queue.take();
+            if (batch == END_OF_INPUT) {
+                return;
+            }
+            long ok = 0;
+            try {
+                for (Row row : batch) {
+                    String error = row.raw != null ? parseCsv(row) : null;
+                    if (error == null) {
+                        error = validate(row);
+                    }
+                    if (error == null) {
+                        error = insert(row);
+                    }
+                    if (error == null) {
+                        ok++;
+                    } else {
+                        reject(rejectLog, row, error);
+                        rejected.incrementAndGet();
+                    }
+                }
+            } finally {
+                accepted.addAndGet(ok); // also the rows inserted before a failure
+            }
+        }
+    }
+
+    // Returns null on success, otherwise the reason the row could not be inserted
+    private String insert(Row row) {
+        try {
+            Account account = Bank.newAccount(row.name, row.phone, row.email, row.type,
+                                              Money.toRupees(row.depositPaise));
+            bank.registerAccount(account);
+            return null;
+        } catch (RuntimeException e) {
+            return "Could not create account: " + e.getMessage();
+        }
+    }
+
+    private static void reject(Writer rejectLog, Row row, String error) {
+        String detail = row.raw != null ? row.raw : row.name + "," + row.phone + "," + row.email;
+        synchronized (rejectLog) {
+            try {
+                rejectLog.write(row.number + "\t" + error + "\t" + detail + "\n");
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to write rejected rows", e);
+            }
+        }
+    }
+
+    // ---------------- Parsing and validation ----------------
+
+    private static String parseCsv(Row row) {
+        List<String> fields = splitCsv(row.raw);
+        if (fields == null) {
+            return "Unterminated quoted field";
+        }
+        if (fields.size() != 5) {
+            return "Expected 5 fields but found " + fields.size();
+        }
+        row.name = fields.get(0).trim();
+        row.phone = fields.get(1).trim();
+        row.email = fields.get(2).trim();
+        row.type = fields.get(3).trim();
+        double deposit;
+        try {
+            deposit = Double.parseDouble(fields.get(4).trim());
+        } catch (NumberFormatException e) {
+            return "Initial deposit is not a number";
+        }
+        if (!Double.isFinite(deposit)) {
+            return "Initial deposit is not a number";
+        }
+        if (!Money.inRange(deposit)) {
+            return "Initial deposit is out of range";
+        }
+        row.depositPaise = Money.ofStoredRupees(deposit);
+        return null;
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(5);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String validate(Row row) {
+        if (row.name.isEmpty()) {
+            return "Account holder name is empty";
+        }
+        if (!isPhoneNumber(row.phone)) {
+            return "Invalid phone number";
+        }
+        int at = row.email.indexOf('@');
+        if (at <= 0 || at == row.email.length() - 1) {
+            return "Invalid email";
+        }
+        String type = row.type;
+        if (!(type.equalsIgnoreCase("SAVINGS") || type.equals("1")
+                || type.equalsIgnoreCase("CURRENT") || type.equals("2"))) {
+            return "Invalid account type";
+        }
+        if (row.depositPaise < Account.MIN_BALANCE_PAISE) {
+            return "Initial deposit must be at least Rs. " + Account.MIN_BALANCE;
+        }
+        return null;
+    }
+
+    private static boolean isPhoneNumber(String phone) {
+        int digits = 0;
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (!(i == 0 && c == '+') && c != ' ' && c != '-') {
+                return false;
+            }
+        }
+        return digits >= 7 && digits <= 15;
+    }
+
+    // ---------------- Command line ----------------
+
+    // java BankImporter <accounts.csv|accounts.bin> [rejects.txt]
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java BankImporter <accounts.csv|accounts.bin> [rejects.txt]");
+            return;
+        }
+        File input = new File(args[0]);
+        File rejects = new File(args.length > 1 ? args[1] : args[0] + ".rejects.txt");
+        Bank bank = BankingSystem.openBank(); // the journaled bank, unless -Dbank.journal=none
+        BankImporter importer = new BankImporter(bank);
+
+        Report report = args[0].endsWith(".bin")
+            ? importer.importBinary(input, rejects)
+            : importer.importCsv(input, rejects);
+        System.out.println("✓ " + report);
+        if (report.rejected > 0) {
+            System.out.println("ℹ Rejected rows written to " + rejects);
+        }
+    }
+}
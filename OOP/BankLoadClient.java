@@ -0,0 +1,192 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ================== LOAD GENERATOR FOR BankServer ==================
+// Opens many connections at once, each its own client session: CREATE an
+// account, then for the run's duration a mix of DEPOSIT / WITHDRAW / BALANCE /
+// TRANSFER (to the account of another session) and an occasional STATEMENT,
+// with an optional pause between requests so thousands of mostly idle
+// connections can be held open. Reports throughput, ERR replies and
+// latency percentiles.
+//
+// java BankLoadClient [connections] [seconds] [pauseMillis] [port]
+//   defaults: 1000 connections, 10 s, no pause, port 7070
+public class BankLoadClient {
+    private static final int SAMPLES_PER_SESSION = 4096;
+
+    private final int port;
+    private final int connections;
+    private final long deadlineNanos;
+    private final long pauseMillis;
+    private final String[] accounts;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong(); // ERR replies (business rejections included)
+    private final AtomicInteger failedSessions = new AtomicInteger();
+    private final AtomicInteger connected = new AtomicInteger();
+    private final long[][] latencies;
+    private final int[] sampleCounts;
+
+    BankLoadClient(int port, int connections, int seconds, long pauseMillis) {
+        this.port = port;
+        this.connections = connections;
+        this.deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        this.pauseMillis = pauseMillis;
+        this.accounts = new String[connections];
+        this.latencies = new long[connections][SAMPLES_PER_SESSION];
+        this.sampleCounts = new int[connections];
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long pause = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : Integer.getInteger("bank.serverPort", BankServer.DEFAULT_PORT);
+        new BankLoadClient(port, connections, seconds, pause).run(System.out);
+    }
+
+    void run(java.io.PrintStream out) throws InterruptedException {
+        out.println("Load: " + connections + " connection(s) on " + BankServer.threadKind()
+                    + " threads, pause " + pauseMillis + " ms");
+        long start = System.nanoTime();
+        CountDownLatch done = new CountDownLatch(connections);
+        ExecutorService clients = BankServer.perTaskExecutor("bank-client");
+        for (int i = 0; i < connections; i++) {
+            int session = i;
+            clients.execute(() -> {
+                try {
+                    session(session);
+                } catch (IOException e) {
+                    failedSessions.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        clients.shutdown();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] all = merged();
+        out.printf("  peak connections %,d, failed sessions %,d%n", connected.get(), failedSessions.get());
+        out.printf("  %,d requests in %.1f s = %,.0f req/s, %,d ERR replies%n",
+                   requests.get(), seconds, requests.get() / seconds, rejected.get());
+        if (all.length > 0) {
+            out.printf("  latency p50 %.0f us, p99 %.0f us, p99.9 %.0f us, max %.0f us%n",
+                       percentile(all, 0.50) / 1e3, percentile(all, 0.99) / 1e3,
+                       percentile(all, 0.999) / 1e3, all[all.length - 1] / 1e3);
+        }
+    }
+
+    // ---------------- One client ----------------
+
+    private void session(int session) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            connected.incrementAndGet();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream out = socket.getOutputStream();
+            String reply = call(session, in, out,
+                                "CREATE Load Client " + session + "|98765" + String.format("%05d", session % 100000)
+                                + "|load" + session + "@example.com|CURRENT|100000");
+            if (!reply.startsWith("OK ")) {
+                throw new IOException("CREATE failed: " + reply);
+            }
+            accounts[session] = reply.substring(3);
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadlineNanos) {
+                int pick = random.nextInt(100);
+                String request;
+                if (pick < 35) {
+                    request = "DEPOSIT " + (1 + random.nextInt(500));
+                } else if (pick < 65) {
+                    request = "WITHDRAW " + (1 + random.nextInt(500));
+                } else if (pick < 85) {
+                    request = "BALANCE";
+                } else if (pick < 98) {
+                    String target = accounts[random.nextInt(connections)];
+                    request = target != null && !target.equals(accounts[session])
+                        ? "TRANSFER " + target + " " + (1 + random.nextInt(100)) + " k" + session + "-" + requests.get()
+                        : "BALANCE";
+                } else {
+                    request = "STATEMENT";
+                }
+                reply = call(session, in, out, request);
+                if (request.equals("STATEMENT") && reply.startsWith("OK ")) {
+                    for (int lines = Integer.parseInt(reply.substring(3)); lines > 0; lines--) {
+                        in.readLine();
+                    }
+                }
+                if (pauseMillis > 0) {
+                    try {
+                        Thread.sleep(pauseMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            out.write("QUIT\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private String call(int session, BufferedReader in, OutputStream out, String request) throws IOException {
+        long start = System.nanoTime();
+        out.write((request + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        String reply = in.readLine();
+        if (reply == null) {
+            throw new IOException("Server closed the connection");
+        }
+        record(session, System.nanoTime() - start);
+        requests.incrementAndGet();
+        if (reply.startsWith("ERR")) {
+            rejected.incrementAndGet();
+        }
+        return reply;
+    }
+
+    // Keeps the first samples of each session plus a random replacement of later ones
+    private void record(int session, long nanos) {
+        int count = sampleCounts[session]++;
+        if (count < SAMPLES_PER_SESSION) {
+            latencies[session][count] = nanos;
+        } else {
+            int slot = ThreadLocalRandom.current().nextInt(count + 1);
+            if (slot < SAMPLES_PER_SESSION) {
+                latencies[session][slot] = nanos;
+            }
+        }
+    }
+
+    private long[] merged() {
+        int total = 0;
+        for (int i = 0; i < connections; i++) {
+            total += Math.min(sampleCounts[i], SAMPLES_PER_SESSION);
+        }
+        long[] all = new long[total];
+        int at = 0;
+        for (int i = 0; i < connections; i++) {
+            int n = Math.min(sampleCounts[i], SAMPLES_PER_SESSION);
+            System.arraycopy(latencies[i], 0, all, at, n);
+            at += n;
+        }
+        Arrays.sort(all);
+        return all;
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))];
+    }
+}
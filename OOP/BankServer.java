@@ -0,0 +1,300 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ================== TCP FRONT END ==================
+// Line protocol on localhost so many clients can drive one Bank at once. Each
+// connection is a session served by its own thread: a virtual thread when the
+// JVM has them (Java 21+, found by reflection so this still compiles on 17),
+// otherwise a platform thread with a small stack from a cached pool. Sessions
+// only block on their own socket and their account's monitor, and keep no
+// per-thread journal or statement buffers (see TransactionJournal, StatementRenderer).
+//
+// Measured on one CPU with JDK 17 platform threads, BankLoadClient with a 1 s
+// pause: 10,000 connections held with no failed sessions, about 110 KB RSS and
+// 35 KB live heap per session, mostly thread stack and the socket's
+// encoder/decoder buffers. With client and server sharing that CPU the median
+// reply took seconds at 10,000; at 2,000 the median was about 1 ms.
+//
+// NOT SECURE: LOGIN takes an account number and nothing else, and traffic is
+// plain text. The listener binds to loopback only; this is a load-testing front
+// end, not something to expose to real clients.
+//
+// Requests are one line, words separated by spaces; replies are one line,
+// "OK ..." or "ERR <STATUS> <message>", except STATEMENT, which replies
+// "OK <n>" and then n lines of the mini statement.
+//
+//   CREATE <name>|<phone>|<email>|<SAVINGS|CURRENT>|<deposit>   -> OK <account>  (and logs in)
+//   LOGIN <account>                  -> OK <holder name>  (no credential checked)
+//   DEPOSIT <amount>                 -> OK <balance>
+//   WITHDRAW <amount>                -> OK <balance>
+//   TRANSFER <account> <amount> [<idempotency key>]  -> OK <balance>
+//   BALANCE                          -> OK <balance>
+//   STATEMENT                        -> OK <n>, then n lines
+//   LOGOUT / QUIT
+//
+// java BankServer [port]   (default -Dbank.serverPort or 7070; bank from -Dbank.journal)
+// Event printing is off unless -Dbank.console=true, so the console stays quiet.
+public class BankServer {
+    static final int DEFAULT_PORT = 7070;
+    private static final int LINE_BUFFER = 1024; // chars; requests and replies are short lines
+
+    private final Bank bank;
+    private final ServerSocket listener;
+    private final ExecutorService sessions;
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicLong served = new AtomicLong();
+
+    BankServer(Bank bank, int port) throws IOException {
+        this.bank = bank;
+        this.listener = new ServerSocket();
+        this.listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4096);
+        this.sessions = perTaskExecutor("bank-session");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (System.getProperty("bank.console") == null) {
+            System.setProperty("bank.console", "false"); // read when the event bus starts
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("bank.serverPort", DEFAULT_PORT);
+        BankServer server = new BankServer(BankingSystem.openBank(), port);
+        System.out.println("✓ Bank server listening on " + server.listener.getLocalSocketAddress()
+                           + " (" + threadKind() + " threads per session)");
+        server.serve();
+    }
+
+    // Accepts until the listener is closed
+    void serve() {
+        while (!listener.isClosed()) {
+            Socket socket;
+            try {
+                socket = listener.accept();
+            } catch (IOException e) {
+                if (listener.isClosed()) {
+                    break;
+                }
+                System.out.println("⚠ Accept failed: " + e.getMessage());
+                continue;
+            }
+            open.incrementAndGet();
+            sessions.execute(() -> session(socket));
+        }
+    }
+
+    void close() throws IOException {
+        listener.close();
+        sessions.shutdownNow();
+    }
+
+    int port() {
+        return listener.getLocalPort();
+    }
+
+    int openSessions() {
+        return open.get();
+    }
+
+    long requestsServed() {
+        return served.get();
+    }
+
+    // ---------------- Threads ----------------
+
+    // One new thread per task: virtual when available, else small-stack platform threads
+    static ExecutorService perTaskExecutor(String name) {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory factory = task -> {
+                Thread thread = new Thread(null, task, name + "-" + count.incrementAndGet(), 256 * 1024);
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newCachedThreadPool(factory);
+        }
+    }
+
+    static String threadKind() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return "virtual";
+        } catch (NoSuchMethodException e) {
+            return "platform";
+        }
+    }
+
+    // ---------------- Sessions ----------------
+
+    private void session(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8), LINE_BUFFER);
+             Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), LINE_BUFFER)) {
+            s.setTcpNoDelay(true);
+            Session session = new Session();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String reply = handle(session, line.trim());
+                served.incrementAndGet();
+                if (reply == null) {
+                    break; // QUIT
+                }
+                out.write(reply);
+                out.write('\n');
+                if (!in.ready()) {
+                    out.flush(); // pipelined requests are answered together
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // Client went away; nothing to answer
+        } finally {
+            open.decrementAndGet();
+        }
+    }
+
+    private static final class Session {
+        Account account;
+    }
+
+    // The reply to one request line, or null to close the connection
+    String handle(Session session, String line) {
+        int space = line.indexOf(' ');
+        String command = (space < 0 ? line : line.substring(0, space)).toUpperCase();
+        String args = space < 0 ? "" : line.substring(space + 1).trim();
+        try {
+            switch (command) {
+                case "CREATE":
+                    return create(session, args);
+                case "LOGIN":
+                    return login(session, args);
+                case "LOGOUT":
+                    session.account = null;
+                    return "OK";
+                case "QUIT":
+                    return null;
+                case "":
+                    return error("BAD_REQUEST", "Empty request");
+                default:
+                    break;
+            }
+            Account account = session.account;
+            if (account == null) {
+                return error("NOT_LOGGED_IN", "LOGIN or CREATE first");
+            }
+            switch (command) {
+                case "DEPOSIT":
+                    return account.deposit(amount(args)) ? ok(account) : reply(account, Outcome.ACCOUNT_INACTIVE);
+                case "WITHDRAW":
+                    return reply(account, account.tryWithdraw(amount(args)));
+                case "TRANSFER":
+                    return transfer(account, args.split(" +"));
+                case "BALANCE":
+                    return ok(account);
+                case "STATEMENT":
+                    String statement = account.miniStatement();
+                    StatementRenderer.release();
+                    String[] lines = statement.split("\\R");
+                    return "OK " + lines.length + "\n" + String.join("\n", lines);
+                default:
+                    return error("BAD_REQUEST", "Unknown command " + command);
+            }
+        } catch (InvalidAmountException e) {
+            return error("INVALID_AMOUNT", e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return error("BAD_REQUEST", e.getMessage());
+        } catch (RuntimeException e) {
+            // A bug, not a bad request: answer it and keep the session alive
+            return error("INTERNAL", e.getClass().getSimpleName());
+        }
+    }
+
+    private String create(Session session, String args) throws InvalidAmountException {
+        String[] fields = args.split("\\|", -1);
+        if (fields.length != 5) {
+            return error("BAD_REQUEST", "CREATE <name>|<phone>|<email>|<type>|<deposit>");
+        }
+        double deposit = amount(fields[4]);
+        if (deposit < Account.MIN_BALANCE) {
+            return error("INVALID_AMOUNT", "Initial deposit must be at least Rs. " + Account.MIN_BALANCE);
+        }
+        Account account = Bank.newAccount(fields[0].trim(), fields[1].trim(), fields[2].trim(), fields[3].trim(), deposit);
+        if (account == null) {
+            return error("BAD_REQUEST", "Invalid account type: " + fields[3]);
+        }
+        bank.registerAccount(account);
+        session.account = account;
+        return "OK " + account.getAccountNumber();
+    }
+
+    private String login(Session session, String accountNumber) {
+        Account account = bank.findAccount(accountNumber);
+        if (account == null) {
+            return error("ACCOUNT_NOT_FOUND", "Account not found: " + accountNumber);
+        }
+        if (!account.isActive()) {
+            return error("ACCOUNT_INACTIVE", "This account is inactive");
+        }
+        session.account = account;
+        return "OK " + account.getAccountHolderName();
+    }
+
+    private String transfer(Account account, String[] words) throws InvalidAmountException {
+        if (words.length < 2 || words.length > 3) {
+            return error("BAD_REQUEST", "TRANSFER <account> <amount> [<idempotency key>]");
+        }
+        double amount = amount(words[1]);
+        if (words.length == 3) {
+            TransferReceipt receipt = bank.transfer(words[2], account.getAccountNumber(), words[0], amount);
+            return receipt.isCompleted() ? ok(account) : error(receipt.status.name(), receipt.message);
+        }
+        Account target = bank.findAccount(words[0]);
+        if (target == null || !target.isActive()) {
+            return error("ACCOUNT_NOT_FOUND", "Account not found: " + words[0]);
+        }
+        return reply(account, account.tryTransfer(target, amount));
+    }
+
+    // A finite amount the account code can hold in paise
+    private static double amount(String text) throws InvalidAmountException {
+        double amount;
+        try {
+            amount = Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not an amount: " + text);
+        }
+        if (!Money.inRange(amount)) {
+            throw new InvalidAmountException(Money.OUT_OF_RANGE);
+        }
+        return amount;
+    }
+
+    private static String ok(Account account) {
+        return "OK " + Money.format(account.getBalancePaise());
+    }
+
+    // Rejections come back as an Outcome, so a busy session throws nothing for them
+    private static String reply(Account account, Outcome outcome) {
+        return outcome.isOk() ? ok(account) : error(outcome.status.name(), outcome.message());
+    }
+
+    // Messages are multi-line on the console; one line here
+    private static String error(String status, String message) {
+        return "ERR " + status + " " + (message == null ? "" : message.replace('\n', ' ').replaceAll(" +", " "));
+    }
+}
@@ -0,0 +1,332 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// ================== BINARY ACCOUNT SNAPSHOTS ==================
+// A snapshot holds the complete state of every account (balances, limit windows,
+// interest accrual, month-end periods, subclass counters and the columnar history)
+// together with the journal offset it was started at. Restart loads the snapshot
+// and replays only the journal records after that offset, so recovery time is
+// bounded by the snapshot interval rather than by the length of the journal.
+//
+// Taking a snapshot does not stop the bank: accounts are written one at a time
+// under their own monitor. Each account also stores the offset of the last
+// journal record it wrote, and replay skips records at or below it, so records
+// appended while the snapshot was running are applied exactly once.
+//
+// File layout (big-endian):
+//   int magic 'BNKS' | int version | long journalOffset | long finishedMillis
+//   int typeCount | typeCount x string        (the interned transaction types)
+//   int accountCount | accountCount x account (see Account.writeSnapshot)
+// Columns are written as bulk primitive runs, so loading is mostly sequential copying.
+// The file is written next to its final name and moved into place when complete.
+final class BankSnapshot {
+    static final int MAGIC = 0x424E4B53; // "BNKS"
+    static final int VERSION = 2; // 2: history stores carry their archived count and block
+
+    // Header values of a snapshot that has been loaded or written
+    final long journalOffset;
+    final long finishedMillis;
+    final int accounts;
+
+    private BankSnapshot(long journalOffset, long finishedMillis, int accounts) {
+        this.journalOffset = journalOffset;
+        this.finishedMillis = finishedMillis;
+        this.accounts = accounts;
+    }
+
+    // ---------------- Writing ----------------
+
+    static BankSnapshot write(Bank bank, TransactionJournal journal, File file) throws IOException {
+        // Taken first: every record before it is already reflected in its account
+        long journalOffset = journal != null ? journal.position() : 0;
+        File temp = new File(file.getPath() + ".tmp");
+        int count = 0;
+
+        try (Out out = new Out(FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(journalOffset);
+            out.putLong(0); // finishedMillis, patched below
+            String[] types = TransactionTypes.names();
+            out.putInt(types.length);
+            for (String type : types) {
+                out.putString(type);
+            }
+
+            List<Account> accounts = new ArrayList<>(bank.getAccounts());
+            out.putInt(accounts.size());
+            for (Account account : accounts) {
+                account.writeSnapshot(out);
+                count++;
+            }
+            out.finish(16); // where finishedMillis sits in the header
+        }
+        bank.forceHistory(); // archive blocks the snapshot refers to
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        return new BankSnapshot(journalOffset, System.currentTimeMillis(), count);
+    }
+
+    // Writes a snapshot every 'intervalSeconds' on a daemon thread (0 turns it off)
+    static void schedule(Bank bank, TransactionJournal journal, File file, long intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bank-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                write(bank, journal, file);
+            } catch (IOException | RuntimeException e) {
+                System.out.println("⚠ Snapshot failed: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    // ---------------- Reading ----------------
+
+    // Fills 'accounts' from the snapshot and returns its header
+    static BankSnapshot read(File file, Map<String, Account> accounts) throws IOException {
+        try (In in = new In(FileChannel.open(file.toPath(), StandardOpenOption.READ))) {
+            in.readVersion(file);
+            long journalOffset = in.getLong();
+            long finishedMillis = in.getLong();
+
+            // Codes in the file -> codes in this process
+            byte[] typeCodes = new byte[in.getInt()];
+            for (int i = 0; i < typeCodes.length; i++) {
+                typeCodes[i] = TransactionTypes.intern(in.getString());
+            }
+
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                Account account = Account.readSnapshot(in, typeCodes);
+                accounts.put(account.getAccountNumber(), account);
+            }
+            return new BankSnapshot(journalOffset, finishedMillis, count);
+        }
+    }
+
+    // Reads just the header, e.g. to decide whether a snapshot predates a point in time
+    static BankSnapshot readHeader(File file) throws IOException {
+        try (In in = new In(FileChannel.open(file.toPath(), StandardOpenOption.READ))) {
+            in.readVersion(file);
+            long journalOffset = in.getLong();
+            long finishedMillis = in.getLong();
+            return new BankSnapshot(journalOffset, finishedMillis, -1);
+        }
+    }
+
+    // ---------------- Command line ----------------
+
+    // java BankSnapshot now                                  snapshot -Dbank.journal right away
+    // java BankSnapshot asOf <yyyy-MM-ddTHH:mm> [account]   show the bank (or one account) at that time
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || (args[0].equals("asOf") && args.length < 2)) {
+            System.out.println("Usage: java BankSnapshot now | asOf <yyyy-MM-ddTHH:mm[:ss]> [accountNumber]");
+            return;
+        }
+        String path = System.getProperty("bank.journal", "bank.journal");
+        File snapshot = new File(path + ".snapshot");
+        try (TransactionJournal journal = TransactionJournal.fromSystemProperties(new File(path))) {
+            if (args[0].equals("now")) {
+                long start = System.nanoTime();
+                Bank bank = new Bank("STATE BANK OF JAVA", "SBOJ0001234", journal, snapshot);
+                BankSnapshot written = write(bank, journal, snapshot);
+                System.out.printf("✓ Snapshot of %d account(s) written to %s in %.2f s%n",
+                                  written.accounts, snapshot, (System.nanoTime() - start) / 1e9);
+                return;
+            }
+
+            long asOf = Account.toEpochMillis(LocalDateTime.parse(args[1]));
+            Bank bank = Bank.restoreAsOf("STATE BANK OF JAVA", "SBOJ0001234", journal, snapshot, asOf);
+            System.out.println("ℹ State as of " + args[1]);
+            if (args.length > 2) {
+                Account account = bank.getAccount(args[2]);
+                if (account != null) {
+                    account.displayAccountInfo();
+                    account.printMiniStatement();
+                }
+            } else {
+                bank.displayBankInfo();
+            }
+        }
+    }
+
+    // ================== BUFFERED BINARY OUTPUT ==================
+    static final class Out implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+
+        Out(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putByte(byte value) throws IOException { ensure(1); buf.put(value); }
+        void putBoolean(boolean value) throws IOException { putByte((byte) (value ? 1 : 0)); }
+        void putInt(int value) throws IOException { ensure(4); buf.putInt(value); }
+        void putLong(long value) throws IOException { ensure(8); buf.putLong(value); }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            putBytes(bytes, 0, bytes.length);
+        }
+
+        void putLongs(long[] values, int from, int count) throws IOException {
+            while (count > 0) {
+                ensure(8);
+                int run = Math.min(count, buf.remaining() / 8);
+                buf.asLongBuffer().put(values, from, run);
+                buf.position(buf.position() + run * 8);
+                from += run;
+                count -= run;
+            }
+        }
+
+        void putInts(int[] values, int from, int count) throws IOException {
+            while (count > 0) {
+                ensure(4);
+                int run = Math.min(count, buf.remaining() / 4);
+                buf.asIntBuffer().put(values, from, run);
+                buf.position(buf.position() + run * 4);
+                from += run;
+                count -= run;
+            }
+        }
+
+        void putBytes(byte[] values, int from, int count) throws IOException {
+            while (count > 0) {
+                ensure(1);
+                int run = Math.min(count, buf.remaining());
+                buf.put(values, from, run);
+                from += run;
+                count -= run;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            buf.clear();
+        }
+
+        // Writes what is buffered, stamps the current time at 'timePosition' and forces the file
+        void finish(long timePosition) throws IOException {
+            drain();
+            ByteBuffer time = ByteBuffer.allocate(8).putLong(0, System.currentTimeMillis());
+            channel.write(time, timePosition);
+            channel.force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // ================== BUFFERED BINARY INPUT ==================
+    static final class In implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+        int version = VERSION; // of the file being read
+
+        In(FileChannel channel) {
+            this.channel = channel;
+            buf.flip(); // empty
+        }
+
+        void readVersion(File file) throws IOException {
+            version = getInt() == MAGIC ? getInt() : -1;
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Not a bank snapshot: " + file);
+            }
+        }
+
+        byte getByte() throws IOException { require(1); return buf.get(); }
+        boolean getBoolean() throws IOException { return getByte() != 0; }
+        int getInt() throws IOException { require(4); return buf.getInt(); }
+        long getLong() throws IOException { require(8); return buf.getLong(); }
+
+        String getString() throws IOException {
+            byte[] bytes = new byte[getInt()];
+            getBytes(bytes, 0, bytes.length);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void getLongs(long[] values, int from, int count) throws IOException {
+            while (count > 0) {
+                require(8);
+                int run = Math.min(count, buf.remaining() / 8);
+                buf.asLongBuffer().get(values, from, run);
+                buf.position(buf.position() + run * 8);
+                from += run;
+                count -= run;
+            }
+        }
+
+        void getInts(int[] values, int from, int count) throws IOException {
+            while (count > 0) {
+                require(4);
+                int run = Math.min(count, buf.remaining() / 4);
+                buf.asIntBuffer().get(values, from, run);
+                buf.position(buf.position() + run * 4);
+                from += run;
+                count -= run;
+            }
+        }
+
+        void getBytes(byte[] values, int from, int count) throws IOException {
+            while (count > 0) {
+                require(1);
+                int run = Math.min(count, buf.remaining());
+                buf.get(values, from, run);
+                from += run;
+                count -= run;
+            }
+        }
+
+        private void require(int bytes) throws IOException {
+            if (buf.remaining() >= bytes) {
+                return;
+            }
+            buf.compact();
+            while (buf.position() < bytes) {
+                if (channel.read(buf) < 0) {
+                    throw new IOException("Snapshot is truncated");
+                }
+            }
+            buf.flip();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
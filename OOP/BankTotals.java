@@ -0,0 +1,52 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// ================== BANK-WIDE AGGREGATES ==================
+// Totals kept up to date by the accounts themselves, so dashboard queries cost
+// O(1) whatever the number of accounts. Each account reports the change in its
+// balance, overdraft and active flag while it holds its own monitor; LongAdder
+// spreads concurrent updates over cells, so accounts never contend on one counter.
+// A read taken while operations run is a sum of recent values, not a snapshot.
+final class BankTotals {
+    private final LongAdder activeAccounts = new LongAdder();
+    private final LongAdder overdraftOutstanding = new LongAdder();
+    private final Map<String, LongAdder> balanceByType = new ConcurrentHashMap<>();
+
+    // Accounts keep the adder for their type, so updates skip the map lookup
+    LongAdder balanceOf(String accountType) {
+        return balanceByType.computeIfAbsent(accountType, type -> new LongAdder());
+    }
+
+    void activeChanged(int delta) {
+        activeAccounts.add(delta);
+    }
+
+    void overdraftChanged(long delta) {
+        overdraftOutstanding.add(delta);
+    }
+
+    // ---------------- Queries ----------------
+
+    long activeAccounts() {
+        return activeAccounts.sum();
+    }
+
+    // Balances held across all accounts, in paise
+    long totalDepositsPaise() {
+        long total = 0;
+        for (LongAdder balance : balanceByType.values()) {
+            total += balance.sum();
+        }
+        return total;
+    }
+
+    long balancePaise(String accountType) {
+        LongAdder balance = balanceByType.get(accountType);
+        return balance != null ? balance.sum() : 0;
+    }
+
+    long overdraftOutstandingPaise() {
+        return overdraftOutstanding.sum();
+    }
+}
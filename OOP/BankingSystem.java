@@ -1,11 +1,18 @@
+import java.io.File;
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 // ================== CUSTOM EXCEPTIONS ==================
 class InsufficientBalanceException extends Exception {
@@ -27,8 +34,10 @@ class InvalidAmountException extends Exception {
 }
 
 // ================== TRANSACTION CLASS (COMPOSITION) ==================
+// Materialised view of one history entry. Accounts keep their history in a
+// columnar TransactionStore and only build Transaction objects on request.
 class Transaction {
-    private String transactionId;
+    private long transactionId;
     private String type;
     private double amount;
     private double balanceAfter;
@@ -42,10 +51,23 @@ class Transaction {
         this.timestamp = LocalDateTime.now();
     }
     
-    private String generateTransactionId() {
-        return "TXN" + System.currentTimeMillis() + (int)(Math.random() * 1000);
+    // Used when rebuilding history from the journal or the columnar store
+    public Transaction(long transactionId, String type, double amount, double balanceAfter,
+                       LocalDateTime timestamp) {
+        this.transactionId = transactionId;
+        this.type = type;
+        this.amount = amount;
+        this.balanceAfter = balanceAfter;
+        this.timestamp = timestamp;
+    }
+    
+    static long generateTransactionId() {
+        return TransactionIdGenerator.next();
     }
     
+    // The string form is only built when it is printed
+    public String getTransactionId() { return TransactionIdGenerator.format(transactionId); }
+    public long getTransactionNumber() { return transactionId; }
     public String getType() { return type; }
     public double getAmount() { return amount; }
     public double getBalanceAfter() { return balanceAfter; }
@@ -53,258 +75,1032 @@ class Transaction {
     
     @Override
     public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
-        return String.format("%-18s | %-15s | Rs. %10.2f | Balance: Rs. %10.2f | %s",
-            transactionId, type, amount, balanceAfter, timestamp.format(formatter));
+        return format(getTransactionId(), type, amount, balanceAfter, timestamp);
+    }
+    
+    // "%-18s | %-15s | Rs. %10.2f | Balance: Rs. %10.2f | dd-MM-yyyy HH:mm:ss", via StatementRenderer
+    static String format(String transactionId, String type, double amount, double balanceAfter,
+                         LocalDateTime timestamp) {
+        StatementRenderer out = StatementRenderer.current();
+        int mark = out.mark();
+        out.transaction(transactionId, type, Money.ofStoredRupees(amount), Money.ofStoredRupees(balanceAfter),
+                        Account.toEpochMillis(timestamp));
+        return out.takeFrom(mark);
     }
 }
 
 // ================== PRINTABLE INTERFACE ==================
 interface Printable {
+    int DEFAULT_PAGE_SIZE = 50;
+    
     void printPassbook(LocalDateTime fromDate, LocalDateTime toDate);
     void printMiniStatement();
+    
+    // Prints page 'pageNumber' (0-based) of the passbook; returns true if more pages follow
+    boolean printPassbookPage(LocalDateTime fromDate, LocalDateTime toDate, int pageNumber, int pageSize);
 }
 
 // ================== ABSTRACT ACCOUNT CLASS ==================
+// Thread-safety: every mutation of an account runs while holding that account's
+// own monitor, so operations on different accounts never contend with each other.
+// Operations spanning two accounts (transfers) lock both in account-number order.
 abstract class Account implements Printable {
     // Static members
-    private static int accountCounter = 10001;
     protected static final double MIN_BALANCE = 1000.0;
+    protected static final long MIN_BALANCE_PAISE = 100000;
+    protected static final long CHARGES_NOT_COLLECTED = -1;
+    static final long MONTH_END_ALREADY_POSTED = Long.MIN_VALUE;
+    private static final String INTEREST_POSTED_MARK = "INTEREST_POSTED:";
+    private static final String CHARGES_POSTED_MARK = "CHARGES_POSTED:";
+    private static final String HOLDER_NAME_MARK = "HOLDER_NAME:";
+    private static final String PHONE_MARK = "PHONE:";
+    private static final String EMAIL_MARK = "EMAIL:";
     
     // Instance variables (Encapsulation - private fields)
+    // All money fields are fixed-point paise
     private String accountNumber;
     private String accountHolderName;
     private String phoneNumber;
     private String email;
     private String accountType;
-    private double balance;
+    private volatile long balance;
     private LocalDate accountOpenDate;
-    private List<Transaction> transactions;
-    private double dailyWithdrawalLimit;
-    private double todayWithdrawnAmount;
-    private LocalDate lastWithdrawalDate;
-    private boolean isActive;
+    private TransactionStore transactions;
+    private long dailyWithdrawalLimit;
+    private WithdrawalWindow withdrawalWindow;
+    private BankClock clock;
+    private volatile boolean isActive;
+    private TransactionJournal journal;
+    private final InterestAccrual accrual = new InterestAccrual();
+    private long journalOffset = -1; // offset of the last journal record written for this account
+    // Last month-end period (yyyymm) each phase ran for, so a rerun never posts twice
+    private int interestPostedPeriod;
+    private int chargesPostedPeriod;
+    // Bank-wide totals this account reports its changes to (null until registered),
+    // and the values it last reported
+    private BankTotals totals;
+    private LongAdder typeBalance;
+    private long reportedBalance;
+    private long reportedOverdraft;
+    // Off-heap row holding the hot fields once moveOffHeap() has run (-1 = fields above)
+    private AccountTable table;
+    private int row = -1;
     
     // Constructor
-    public Account(String accountHolderName, String phoneNumber, String email, 
+    public Account(String accountHolderName, String phoneNumber, String email,
                    String accountType, double initialDeposit, double dailyLimit) {
-        this.accountNumber = generateAccountNumber();
+        this.accountNumber = AccountNumberAllocator.next();
         this.accountHolderName = accountHolderName;
         this.phoneNumber = phoneNumber;
         this.email = email;
         this.accountType = accountType;
-        this.balance = initialDeposit;
+        if (!Money.inRange(initialDeposit)) {
+            throw new IllegalArgumentException(Money.OUT_OF_RANGE);
+        }
+        this.balance = Money.ofStoredRupees(initialDeposit);
         this.accountOpenDate = LocalDate.now();
-        this.transactions = new ArrayList<>();
-        this.dailyWithdrawalLimit = dailyLimit;
-        this.todayWithdrawnAmount = 0.0;
-        this.lastWithdrawalDate = LocalDate.now();
+        this.transactions = new TransactionStore();
+        this.dailyWithdrawalLimit = Money.ofStoredRupees(dailyLimit);
+        this.withdrawalWindow = WithdrawalWindow.create(WithdrawalWindow.DEFAULT_KIND);
+        this.clock = BankClock.current();
         this.isActive = true;
         
         // Add initial deposit transaction
-        transactions.add(new Transaction("OPENING_DEPOSIT", initialDeposit, balance));
+        recordTransaction("OPENING_DEPOSIT", balance);
     }
     
-    // Static synchronized method for account number generation
-    private static synchronized String generateAccountNumber() {
-        return "ACC" + String.format("%08d", accountCounter++);
+    // Restore constructor - balance and history are rebuilt by replaying the journal
+    protected Account(String accountNumber, String accountHolderName, String phoneNumber, String email,
+                      String accountType, double dailyLimit, LocalDate accountOpenDate) {
+        AccountNumberAllocator.reserve(accountNumber);
+        this.accountNumber = accountNumber;
+        this.accountHolderName = accountHolderName;
+        this.phoneNumber = phoneNumber;
+        this.email = email;
+        this.accountType = accountType;
+        this.balance = 0;
+        this.accountOpenDate = accountOpenDate;
+        this.transactions = new TransactionStore();
+        this.dailyWithdrawalLimit = Money.ofStoredRupees(dailyLimit);
+        this.withdrawalWindow = WithdrawalWindow.create(WithdrawalWindow.DEFAULT_KIND);
+        this.clock = BankClock.current();
+        this.isActive = true;
     }
     
     // Abstract methods (must be implemented by subclasses)
-    public abstract double calculateInterest();
+    public abstract long calculateInterestPaise();
     public abstract void applyMonthlyCharges();
     public abstract String getAccountFeatures();
     
-    // Deposit method
-    public void deposit(double amount) throws InvalidAmountException {
+    // Deducts this month's charges without printing; returns the paise deducted
+    // or CHARGES_NOT_COLLECTED if the balance could not cover them
+    public abstract long deductMonthlyCharges();
+    
+    public double calculateInterest() {
+        return Money.toRupees(calculateInterestPaise());
+    }
+    
+    // ---------------- Month-end ----------------
+    // Each phase runs at most once per period (yyyymm). The posting and its period mark
+    // are one journal group, so a run resumed after a crash either finds both (and skips
+    // the account) or neither (and posts again).
+    
+    // Credits this month's interest without printing; accounts that earn none return 0
+    protected long creditMonthEndInterest() {
+        return 0;
+    }
+    
+    // Returns the paise credited, or MONTH_END_ALREADY_POSTED
+    long postMonthEndInterest(int period) {
+        return postMonthEnd(true, period);
+    }
+    
+    // Returns the paise deducted, CHARGES_NOT_COLLECTED or MONTH_END_ALREADY_POSTED
+    long postMonthEndCharges(int period) {
+        return postMonthEnd(false, period);
+    }
+    
+    private long postMonthEnd(boolean interest, int period) {
+        long result;
+        long commit = -1;
+        synchronized (this) {
+            if ((interest ? interestPostedPeriod : chargesPostedPeriod) >= period) {
+                return MONTH_END_ALREADY_POSTED;
+            }
+            beginJournalGroup();
+            try {
+                if (interest) {
+                    result = creditMonthEndInterest();
+                    interestPostedPeriod = period;
+                    recordMark(INTEREST_POSTED_MARK + period);
+                } else {
+                    result = deductMonthlyCharges();
+                    chargesPostedPeriod = period;
+                    recordMark(CHARGES_POSTED_MARK + period);
+                }
+            } finally {
+                commit = endJournalGroup();
+            }
+        }
+        syncJournal(commit);
+        return result;
+    }
+    
+    // Deposit method; returns false (and deposits nothing) if the account is inactive.
+    // The group commit is waited for after the monitor is released, so other
+    // operations on the account do not queue behind the fsync.
+    public boolean deposit(double amount) throws InvalidAmountException {
+        long start = OperationMetrics.start();
+        TransactionJournal journal = deferJournalWait();
+        try {
+            synchronized (this) {
+                return credit(amount);
+            }
+        } catch (InvalidAmountException e) {
+            OperationMetrics.GLOBAL.rejected(OperationMetrics.Op.DEPOSIT, OperationMetrics.Rejection.INVALID_AMOUNT);
+            throw e;
+        } finally {
+            endJournalWait(journal);
+            OperationMetrics.GLOBAL.record(OperationMetrics.Op.DEPOSIT, this, start);
+        }
+    }
+    
+    // deposit() without the latency metrics, for deposits that are part of another operation
+    private boolean credit(double amount) throws InvalidAmountException {
         if (amount <= 0) {
             throw new InvalidAmountException("Deposit amount must be greater than zero!");
         }
-        if (!isActive) {
-            System.out.println("❌ Account is inactive! Cannot perform transaction.");
-            return;
+        long paise = Money.ofRupees(amount);
+        if (depositPaise(paise)) {
+            publish(BankEvent.Type.DEPOSITED, paise, 0, null);
+            return true;
+        }
+        publish(BankEvent.Type.ACCOUNT_INACTIVE, paise, 0, null);
+        return false;
+    }
+    
+    // Paise core of deposit(), no messages; allocates the history row, plus an event
+    // if TRANSACTION_RECORDED is subscribed. Returns false if the account is inactive
+    public synchronized boolean depositPaise(long amount) throws InvalidAmountException {
+        if (amount <= 0) {
+            throw new InvalidAmountException("Deposit amount must be greater than zero!");
+        }
+        if (!isActive()) {
+            return false;
         }
         
-        balance += amount;
-        transactions.add(new Transaction("DEPOSIT", amount, balance));
-        System.out.println("✓ Rs. " + String.format("%.2f", amount) + " deposited successfully!");
-        System.out.println("  New Balance: Rs. " + String.format("%.2f", balance));
+        long balance;
+        try {
+            balance = Math.addExact(getBalancePaise(), amount);
+        } catch (ArithmeticException e) {
+            throw new InvalidAmountException("Deposit would overflow the account balance!");
+        }
+        setBalancePaise(balance);
+        recordTransaction("DEPOSIT", amount);
+        return true;
     }
     
     // Withdraw method with daily limit check
-    public void withdraw(double amount) throws InsufficientBalanceException, 
-                                               DailyLimitExceededException, 
+    public void withdraw(double amount) throws InsufficientBalanceException,
+                                               DailyLimitExceededException,
                                                InvalidAmountException {
+        tryWithdraw(amount).throwIfRejected();
+    }
+    
+    // Same as withdraw(), with a rejection returned instead of thrown (see Outcome).
+    // Waits for the group commit after the monitor is released, as deposit() does.
+    public Outcome tryWithdraw(double amount) {
+        long start = OperationMetrics.start();
+        TransactionJournal journal = deferJournalWait();
+        Outcome outcome;
+        try {
+            synchronized (this) {
+                outcome = debit(amount);
+            }
+        } finally {
+            endJournalWait(journal);
+        }
+        OperationMetrics.GLOBAL.rejected(OperationMetrics.Op.WITHDRAW, outcome);
+        OperationMetrics.GLOBAL.record(OperationMetrics.Op.WITHDRAW, this, start);
+        return outcome;
+    }
+    
+    // tryWithdraw() without the latency metrics, for withdrawals that are part of another operation
+    private Outcome debit(double amount) {
         if (amount <= 0) {
-            throw new InvalidAmountException("Withdrawal amount must be greater than zero!");
+            return Outcome.INVALID_WITHDRAWAL;
         }
-        
-        if (!isActive) {
-            System.out.println("❌ Account is inactive! Cannot perform transaction.");
-            return;
+        if (!Money.inRange(amount)) {
+            return Outcome.AMOUNT_OUT_OF_RANGE;
+        }
+        long paise = Money.ofStoredRupees(amount);
+        Outcome outcome = tryWithdrawPaise(paise);
+        switch (outcome.status) {
+            case OK:
+                publish(BankEvent.Type.WITHDRAWN, paise,
+                        getDailyLimitPaise() - withdrawalWindow.used(clock.millis()), null);
+                break;
+            case ACCOUNT_INACTIVE:
+                publish(BankEvent.Type.ACCOUNT_INACTIVE, paise, 0, null);
+                break;
+            case DAILY_LIMIT_EXCEEDED:
+                publish(BankEvent.Type.DAILY_LIMIT_EXCEEDED, paise, 0, null);
+                break;
+            case INSUFFICIENT_BALANCE:
+                publish(BankEvent.Type.INSUFFICIENT_BALANCE, paise, 0, null);
+                break;
+            default:
+                break;
+        }
+        return outcome;
+    }
+    
+    // Paise form of withdraw(), allocating as depositPaise() does. Rejections are thrown
+    // as withdraw() throws them; an inactive account is not one of them and returns false
+    public synchronized boolean withdrawPaise(long amount) throws InsufficientBalanceException,
+                                                                  DailyLimitExceededException,
+                                                                  InvalidAmountException {
+        Outcome outcome = tryWithdrawPaise(amount);
+        outcome.throwIfRejected();
+        return outcome.isOk();
+    }
+    
+    // Core of every withdrawal; publishes nothing and only allocates for a rejection
+    public synchronized Outcome tryWithdrawPaise(long amount) {
+        if (amount <= 0) {
+            return Outcome.INVALID_WITHDRAWAL;
         }
         
-        // Reset daily withdrawal if new day
-        if (!lastWithdrawalDate.equals(LocalDate.now())) {
-            todayWithdrawnAmount = 0.0;
-            lastWithdrawalDate = LocalDate.now();
+        if (!isActive()) {
+            return Outcome.ACCOUNT_INACTIVE;
         }
         
-        // Check daily limit
-        if (todayWithdrawnAmount + amount > dailyWithdrawalLimit) {
-            throw new DailyLimitExceededException(
-                "Daily withdrawal limit exceeded!\n" +
-                "  Daily Limit: Rs. " + String.format("%.2f", dailyWithdrawalLimit) + "\n" +
-                "  Already Withdrawn Today: Rs. " + String.format("%.2f", todayWithdrawnAmount) + "\n" +
-                "  Available Today: Rs. " + String.format("%.2f", dailyWithdrawalLimit - todayWithdrawnAmount)
-            );
+        // Check daily limit against the account's withdrawal window
+        long now = clock.millis();
+        long withdrawn = withdrawalWindow.used(now);
+        long dailyLimit = getDailyLimitPaise();
+        if (amount > dailyLimit - withdrawn) {
+            return Outcome.dailyLimitExceeded(dailyLimit, withdrawn, withdrawalWindow.label());
         }
         
         // Check minimum balance
-        if (balance - amount < MIN_BALANCE) {
-            throw new InsufficientBalanceException(
-                "Insufficient balance!\n" +
-                "  Current Balance: Rs. " + String.format("%.2f", balance) + "\n" +
-                "  Minimum Balance Required: Rs. " + String.format("%.2f", MIN_BALANCE) + "\n" +
-                "  Maximum Withdrawal: Rs. " + String.format("%.2f", balance - MIN_BALANCE)
-            );
+        long current = getBalancePaise();
+        if (amount > current - MIN_BALANCE_PAISE) {
+            return Outcome.insufficientBalance(current, MIN_BALANCE_PAISE);
         }
         
-        balance -= amount;
-        todayWithdrawnAmount += amount;
-        transactions.add(new Transaction("WITHDRAWAL", amount, balance));
-        System.out.println("✓ Rs. " + String.format("%.2f", amount) + " withdrawn successfully!");
-        System.out.println("  New Balance: Rs. " + String.format("%.2f", balance));
-        System.out.println("  Remaining Daily Limit: Rs. " + 
-                         String.format("%.2f", dailyWithdrawalLimit - todayWithdrawnAmount));
+        setBalancePaise(Math.subtractExact(current, amount));
+        withdrawalWindow.record(now, amount);
+        recordTransaction("WITHDRAWAL", amount);
+        return Outcome.OK;
     }
     
     // Check balance
     public double checkBalance() {
-        return balance;
+        return Money.toRupees(getBalancePaise());
+    }
+    
+    public long getBalancePaise() {
+        return table == null ? balance : table.getLongVolatile(row, AccountTable.BALANCE);
     }
     
     // Display account information (Polymorphism - can be overridden)
-    public void displayAccountInfo() {
-        System.out.println("\n" + "═".repeat(80));
-        System.out.println("                         ACCOUNT INFORMATION");
-        System.out.println("═".repeat(80));
-        System.out.println("Account Number        : " + accountNumber);
-        System.out.println("Account Holder Name   : " + accountHolderName);
-        System.out.println("Phone Number          : " + phoneNumber);
-        System.out.println("Email                 : " + email);
-        System.out.println("Account Type          : " + accountType);
-        System.out.println("Account Status        : " + (isActive ? "Active ✓" : "Inactive ✗"));
-        System.out.println("Current Balance       : Rs. " + String.format("%.2f", balance));
-        System.out.println("Account Open Date     : " + accountOpenDate);
-        System.out.println("Daily Withdrawal Limit: Rs. " + String.format("%.2f", dailyWithdrawalLimit));
-        System.out.println("Today Withdrawn       : Rs. " + String.format("%.2f", todayWithdrawnAmount));
-        System.out.println("Total Transactions    : " + transactions.size());
-        System.out.println("\n" + getAccountFeatures());
-        System.out.println("═".repeat(80) + "\n");
+    public synchronized void displayAccountInfo() {
+        StatementRenderer out = StatementRenderer.current();
+        int mark = out.mark();
+        out.append('\n').line(StatementRenderer.DOUBLE_RULE_80)
+           .line("                         ACCOUNT INFORMATION")
+           .line(StatementRenderer.DOUBLE_RULE_80)
+           .append("Account Number        : ").line(accountNumber)
+           .append("Account Holder Name   : ").line(getAccountHolderName())
+           .append("Phone Number          : ").line(getPhoneNumber())
+           .append("Email                 : ").line(getEmail())
+           .append("Account Type          : ").line(accountType)
+           .append("Account Status        : ").line(isActive() ? "Active ✓" : "Inactive ✗")
+           .append("Current Balance       : Rs. ").money(getBalancePaise()).line("")
+           .append("Account Open Date     : ").line(accountOpenDate.toString())
+           .append("Daily Withdrawal Limit: Rs. ").money(getDailyLimitPaise()).line("")
+           .append("Today Withdrawn       : Rs. ").money(withdrawalWindow.used(clock.millis())).line("")
+           .append("Total Transactions    : ").append(transactions.size()).line("")
+           .append('\n').line(getAccountFeatures())
+           .append(StatementRenderer.DOUBLE_RULE_80).line("\n");
+        out.printFrom(mark);
     }
     
     // Passbook implementation (Interface method)
+    // The range is located with two binary searches over the time index, so
+    // the cost is O(log n + k) and rows are written out one page at a time.
+    // Archived entries are read back block by block and released afterwards.
     @Override
-    public void printPassbook(LocalDateTime fromDate, LocalDateTime toDate) {
-        System.out.println("\n" + "═".repeat(110));
-        System.out.println("                                      PASSBOOK STATEMENT");
-        System.out.println("═".repeat(110));
-        System.out.println("Account: " + accountNumber + " | Holder: " + accountHolderName + " | Type: " + accountType);
-        System.out.println("Period: " + fromDate.toLocalDate() + " to " + toDate.toLocalDate());
-        System.out.println("═".repeat(110));
-        System.out.println(String.format("%-18s | %-15s | %-14s | %-20s | %s", 
-            "Transaction ID", "Type", "Amount", "Balance", "Date & Time"));
-        System.out.println("─".repeat(110));
-        
-        boolean found = false;
-        for (Transaction txn : transactions) {
-            if (!txn.getTimestamp().isBefore(fromDate) && !txn.getTimestamp().isAfter(toDate)) {
-                System.out.println(txn);
-                found = true;
+    public synchronized void printPassbook(LocalDateTime fromDate, LocalDateTime toDate) {
+        long start = OperationMetrics.start();
+        StatementRenderer out = StatementRenderer.current();
+        int mark = out.mark();
+        printPassbookHeader(out, fromDate, toDate);
+        
+        try {
+            int first = transactions.lowerBound(toEpochMillis(fromDate));
+            int end = Math.max(first, transactions.upperBound(toEpochMillis(toDate)));
+            for (int pageStart = first; pageStart < end; pageStart += DEFAULT_PAGE_SIZE) {
+                printPassbookRows(out, pageStart, Math.min(end, pageStart + DEFAULT_PAGE_SIZE));
+                out.printFrom(mark);
+                System.out.flush();
+            }
+            
+            if (first == end) {
+                out.line("                             No transactions found in the specified period.");
             }
+        } finally {
+            transactions.releaseCold();
         }
-        
-        if (!found) {
-            System.out.println("                             No transactions found in the specified period.");
+        printPassbookFooter(out);
+        out.printFrom(mark);
+        OperationMetrics.GLOBAL.record(OperationMetrics.Op.PRINT_PASSBOOK, this, start);
+    }
+    
+    @Override
+    public synchronized boolean printPassbookPage(LocalDateTime fromDate, LocalDateTime toDate,
+                                                  int pageNumber, int pageSize) {
+        if (pageNumber < 0 || pageSize <= 0) {
+            throw new IllegalArgumentException("Page number must be >= 0 and page size > 0");
         }
-        
-        System.out.println("═".repeat(110));
-        System.out.println("Current Balance: Rs. " + String.format("%.2f", balance));
-        System.out.println("═".repeat(110) + "\n");
+        int first;
+        int end;
+        int pageStart;
+        int pageEnd;
+        StatementRenderer out = StatementRenderer.current();
+        int mark = out.mark();
+        printPassbookHeader(out, fromDate, toDate);
+        try {
+            first = transactions.lowerBound(toEpochMillis(fromDate));
+            end = Math.max(first, transactions.upperBound(toEpochMillis(toDate)));
+            pageStart = (int) Math.min(end, first + (long) pageNumber * pageSize);
+            pageEnd = Math.min(end, pageStart + pageSize);
+            printPassbookRows(out, pageStart, pageEnd);
+        } finally {
+            transactions.releaseCold();
+        }
+        int totalPages = Math.max(1, (end - first + pageSize - 1) / pageSize);
+        if (pageStart == pageEnd) {
+            out.line("                             No transactions found in the specified period.");
+        }
+        out.line(StatementRenderer.RULE_110)
+           .append("Page ").append(pageNumber + 1).append(" of ").append(totalPages)
+           .append(" | Transactions in period: ").append(end - first).line("");
+        printPassbookFooter(out);
+        out.printFrom(mark);
+        return pageEnd < end;
+    }
+    
+    // Writes the passbook rows of the period to a bulk export instead of the console
+    synchronized void exportPassbook(PassbookExporter exporter, LocalDateTime fromDate, LocalDateTime toDate)
+            throws IOException {
+        try {
+            int first = transactions.lowerBound(toEpochMillis(fromDate));
+            int end = Math.max(first, transactions.upperBound(toEpochMillis(toDate)));
+            exporter.writeRows(accountNumber, transactions, first, end);
+        } finally {
+            transactions.releaseCold();
+        }
+    }
+    
+    private void printPassbookHeader(StatementRenderer out, LocalDateTime fromDate, LocalDateTime toDate) {
+        out.append('\n').line(StatementRenderer.DOUBLE_RULE_110)
+           .line("                                      PASSBOOK STATEMENT")
+           .line(StatementRenderer.DOUBLE_RULE_110)
+           .append("Account: ").append(accountNumber).append(" | Holder: ").append(getAccountHolderName())
+           .append(" | Type: ").line(accountType)
+           .append("Period: ").append(fromDate.toLocalDate().toString()).append(" to ")
+           .line(toDate.toLocalDate().toString())
+           .line(StatementRenderer.DOUBLE_RULE_110)
+           .line(StatementRenderer.TRANSACTION_COLUMNS)
+           .line(StatementRenderer.RULE_110);
+    }
+    
+    private void printPassbookRows(StatementRenderer out, int from, int to) {
+        for (int i = from; i < to; i++) {
+            out.transaction(transactions, i).line("");
+        }
+    }
+    
+    private void printPassbookFooter(StatementRenderer out) {
+        out.line(StatementRenderer.DOUBLE_RULE_110)
+           .append("Current Balance: Rs. ").money(getBalancePaise()).line("")
+           .append(StatementRenderer.DOUBLE_RULE_110).line("\n");
     }
     
     // Mini statement - last 5 transactions
     @Override
-    public void printMiniStatement() {
-        System.out.println("\n" + "═".repeat(110));
-        System.out.println("                                    MINI STATEMENT (Last 5 Transactions)");
-        System.out.println("═".repeat(110));
-        System.out.println("Account: " + accountNumber + " | Holder: " + accountHolderName);
-        System.out.println("═".repeat(110));
-        System.out.println(String.format("%-18s | %-15s | %-14s | %-20s | %s", 
-            "Transaction ID", "Type", "Amount", "Balance", "Date & Time"));
-        System.out.println("─".repeat(110));
+    public synchronized void printMiniStatement() {
+        StatementRenderer out = StatementRenderer.current();
+        int mark = out.mark();
+        renderMiniStatement(out);
+        out.printFrom(mark);
+    }
+    
+    // The mini statement as text, for callers that do not print to the console
+    synchronized String miniStatement() {
+        StatementRenderer out = StatementRenderer.current();
+        int mark = out.mark();
+        renderMiniStatement(out);
+        return out.takeFrom(mark);
+    }
+    
+    private void renderMiniStatement(StatementRenderer out) {
+        out.append('\n').line(StatementRenderer.DOUBLE_RULE_110)
+           .line("                                    MINI STATEMENT (Last 5 Transactions)")
+           .line(StatementRenderer.DOUBLE_RULE_110)
+           .append("Account: ").append(accountNumber).append(" | Holder: ").line(getAccountHolderName())
+           .line(StatementRenderer.DOUBLE_RULE_110)
+           .line(StatementRenderer.TRANSACTION_COLUMNS)
+           .line(StatementRenderer.RULE_110);
         
         int size = transactions.size();
         int start = Math.max(0, size - 5);
         
         if (size == 0) {
-            System.out.println("                                  No transactions available.");
+            out.line("                                  No transactions available.");
         } else {
-            for (int i = start; i < size; i++) {
-                System.out.println(transactions.get(i));
-            }
+            printPassbookRows(out, start, size);
         }
         
-        System.out.println("═".repeat(110));
-        System.out.println("Current Balance: Rs. " + String.format("%.2f", balance));
-        System.out.println("═".repeat(110) + "\n");
+        printPassbookFooter(out);
     }
     
     // Transfer money to another account
     public void transferMoney(Account targetAccount, double amount) 
             throws InsufficientBalanceException, DailyLimitExceededException, InvalidAmountException {
-        System.out.println("\n💸 Initiating transfer...");
+        tryTransfer(targetAccount, amount).throwIfRejected();
+    }
+    
+    // Same as transferMoney(), with a rejection returned instead of thrown. Nothing
+    // moves when either account is inactive (ACCOUNT_INACTIVE).
+    public Outcome tryTransfer(Account targetAccount, double amount) {
+        // Lock both accounts in a fixed global order so that two opposite
+        // transfers between the same pair can never deadlock
+        Account first = lockOrder(this, targetAccount);
+        Account second = (first == this) ? targetAccount : this;
+        
+        long start = OperationMetrics.start();
+        Outcome outcome;
+        if (!Money.inRange(amount)) {
+            outcome = Outcome.AMOUNT_OUT_OF_RANGE;
+        } else {
+            // The debit and credit records replay together or not at all, and the
+            // group commit is waited for once, after both monitors are released
+            TransactionJournal journal = this.journal;
+            long commit = -1;
+            synchronized (first) {
+                synchronized (second) {
+                    if (journal != null) {
+                        journal.beginGroup();
+                    }
+                    try {
+                        outcome = transferLocked(targetAccount, amount);
+                    } finally {
+                        if (journal != null) {
+                            commit = journal.endGroup();
+                        }
+                    }
+                }
+            }
+            if (journal != null) {
+                journal.sync(commit);
+            }
+        }
+        OperationMetrics.GLOBAL.rejected(OperationMetrics.Op.TRANSFER, outcome);
+        OperationMetrics.GLOBAL.record(OperationMetrics.Op.TRANSFER, this, start);
+        return outcome;
+    }
+    
+    private Outcome transferLocked(Account targetAccount, double amount) {
+        long paise = Money.ofStoredRupees(amount);
+        publish(BankEvent.Type.TRANSFER_STARTED, paise, 0, targetAccount.getAccountNumber());
+        if (!targetAccount.isActive()) {
+            publish(BankEvent.Type.TRANSFER_TARGET_INACTIVE, paise, 0, targetAccount.getAccountNumber());
+            return Outcome.TARGET_INACTIVE;
+        }
         
         // Withdraw from this account
-        this.withdraw(amount);
+        Outcome withdrawal = this.debit(amount);
+        if (!withdrawal.isOk()) {
+            return withdrawal;
+        }
         
         // Deposit to target account
         try {
-            targetAccount.deposit(amount);
-            transactions.add(new Transaction("TRANSFER_OUT_TO_" + targetAccount.getAccountNumber(), 
-                                           amount, balance));
-            targetAccount.getTransactions().add(
-                new Transaction("TRANSFER_IN_FROM_" + this.accountNumber, amount, targetAccount.checkBalance()));
-            System.out.println("✓ Transfer successful!");
-            System.out.println("  Rs. " + String.format("%.2f", amount) + " transferred to " + 
-                             targetAccount.getAccountNumber());
+            targetAccount.credit(amount);
+            recordTransaction("TRANSFER_OUT_TO_" + targetAccount.getAccountNumber(), paise);
+            targetAccount.recordTransaction("TRANSFER_IN_FROM_" + this.accountNumber, paise);
+            publish(BankEvent.Type.TRANSFERRED, paise, 0, targetAccount.getAccountNumber());
+            return Outcome.OK;
         } catch (InvalidAmountException e) {
-            // Revert the withdrawal
-            balance += amount;
-            System.out.println("❌ Transfer failed! Amount reverted.");
+            // Revert the withdrawal; journaled too, as the withdrawal already is
+            setBalancePaise(Math.addExact(getBalancePaise(), paise));
+            recordTransaction("WITHDRAWAL_REVERSAL", paise);
+            publish(BankEvent.Type.TRANSFER_FAILED, paise, 0, targetAccount.getAccountNumber());
+            return Outcome.REVERSED;
+        }
+    }
+    
+    // ---------------- Batched transfers ----------------
+    
+    // Whether the account can pay its share of a transfer batch: null if so, else the
+    // reason. The daily limit applies to the net outflow; caller holds the monitor.
+    String checkBatchDebit(long debit, long credit) {
+        if (!isActive()) {
+            return "Account is inactive: " + accountNumber;
+        }
+        long net = Math.subtractExact(credit, debit);
+        long withdrawn = withdrawalWindow.used(clock.millis());
+        if (net < 0 && -net > getDailyLimitPaise() - withdrawn) {
+            return "Daily withdrawal limit of " + accountNumber + " exceeded by the batch (available Rs. "
+                + Money.format(getDailyLimitPaise() - withdrawn) + ", batch net Rs. " + Money.format(-net) + ")";
+        }
+        if (net < MIN_BALANCE_PAISE - getBalancePaise()) {
+            return "Insufficient balance in " + accountNumber + " for the batch (balance Rs. "
+                + Money.format(getBalancePaise()) + ", batch net Rs. " + Money.format(net) + ")";
+        }
+        return null;
+    }
+    
+    // Posts this account's rows of a transfer batch: a detail record per row (negative
+    // amounts are outgoing), then one entry for the net amount. Only that entry is
+    // published, so a payroll run is one outflow to the velocity monitor rather than a
+    // burst of transfers. Checked by checkBatchDebit first for a paying account; caller
+    // holds the monitor.
+    void postBatch(String[] counterparties, long[] amounts, int count) {
+        long millis = clock.millis();
+        long balance = getBalancePaise();
+        long net = 0;
+        for (int i = 0; i < count; i++) {
+            net = Math.addExact(net, amounts[i]); // before anything is written
+        }
+        long after = Math.addExact(balance, net);
+        for (int i = 0; i < count; i++) {
+            long amount = amounts[i];
+            appendTransferDetail(amount < 0, counterparties[i], Math.abs(amount), balance, millis);
+        }
+        if (net == 0) {
+            return; // the rows cancel out; nothing to move
+        }
+        setBalancePaise(after);
+        if (net < 0) {
+            withdrawalWindow.record(millis, -net);
+            recordTransaction(TransferBatch.BATCH_DEBIT, -net);
+        } else {
+            recordTransaction(TransferBatch.BATCH_CREDIT, net);
+        }
+    }
+    
+    // A TRANSFER_OUT_TO_ / TRANSFER_IN_FROM_ record that leaves the balance as it is;
+    // the type string is only built for the journal
+    private void appendTransferDetail(boolean outgoing, String counterparty, long amount, long balance, long millis) {
+        int number = AccountNumberAllocator.parse(counterparty, 0);
+        String prefix = outgoing ? TransactionTypes.TRANSFER_OUT_PREFIX : TransactionTypes.TRANSFER_IN_PREFIX;
+        if (number < 0) {
+            appendTransaction(prefix + counterparty, amount); // not an allocated number: keep the full text
+            return;
+        }
+        long id = Transaction.generateTransactionId();
+        transactions.append(id, millis, outgoing ? TransactionTypes.TRANSFER_OUT : TransactionTypes.TRANSFER_IN,
+                            number, amount, balance);
+        if (journal != null) {
+            journalOffset = journal.appendTransaction(accountNumber, id, prefix + counterparty, amount, balance, millis);
+        }
+    }
+    
+    // Returns the account whose monitor must be taken first (lowest account number)
+    static Account lockOrder(Account a, Account b) {
+        return a.accountNumber.compareTo(b.accountNumber) <= 0 ? a : b;
+    }
+    
+    // ---------------- Journal ----------------
+    
+    // Appends a transaction (amount in paise) at the current balance and writes it to the journal
+    protected void recordTransaction(String type, long amount) {
+        long millis = appendTransaction(type, amount);
+        // Feeds the velocity monitor (and the audit log); when neither is subscribed
+        // no event is built. The counterparty string is only built for transfers.
+        EventBus bus = EventBus.current();
+        if (bus.wants(BankEvent.Type.TRANSACTION_RECORDED)) {
+            int last = transactions.size() - 1;
+            byte code = transactions.typeCodeAt(last);
+            String counterparty = TransactionTypes.isTransfer(code)
+                ? AccountNumberAllocator.format(transactions.counterpartyAt(last)) : null;
+            bus.publish(new BankEvent(BankEvent.Type.TRANSACTION_RECORDED, accountNumber, amount,
+                                      getBalancePaise(), code, counterparty, millis));
+        }
+        reportTotals();
+    }
+    
+    // Same, without the TRANSACTION_RECORDED event; returns the entry's time
+    private long appendTransaction(String type, long amount) {
+        long id = Transaction.generateTransactionId();
+        long millis = clock.millis();
+        long balanceAfter = getBalancePaise();
+        accrue(millis, type);
+        transactions.append(id, millis, type, amount, balanceAfter);
+        if (journal != null) {
+            journalOffset = journal.appendTransaction(accountNumber, id, type, amount, balanceAfter, millis);
+        }
+        return millis;
+    }
+    
+    // Called by Bank once the account is registered or restored; adds its current state
+    synchronized void attachTotals(BankTotals totals) {
+        this.totals = totals;
+        this.typeBalance = totals.balanceOf(accountType);
+        reportedBalance = 0;
+        reportedOverdraft = 0;
+        if (isActive()) {
+            totals.activeChanged(1);
+        }
+        reportTotals();
+    }
+    
+    // Pushes the change in balance and overdraft since the last report; caller holds the monitor
+    protected void reportTotals() {
+        if (totals == null) {
+            return;
+        }
+        long current = getBalancePaise();
+        if (current != reportedBalance) {
+            typeBalance.add(current - reportedBalance);
+            reportedBalance = current;
+        }
+        long overdraft = getOverdraftOutstandingPaise();
+        if (overdraft != reportedOverdraft) {
+            totals.overdraftChanged(overdraft - reportedOverdraft);
+            reportedOverdraft = overdraft;
+        }
+    }
+    
+    // Overdraft currently drawn, in paise (only current accounts have one)
+    protected long getOverdraftOutstandingPaise() {
+        return 0;
+    }
+    
+    // Every recorded transaction leaves a new balance; crediting interest also closes the accrual period
+    private void accrue(long millis, String type) {
+        if (type.equals("INTEREST_CREDIT")) {
+            accrual.restart(millis);
+        }
+        accrual.onBalance(millis, getBalancePaise());
+    }
+    
+    // Hands a domain event to the event bus; printing and auditing happen on the bus thread
+    protected void publish(BankEvent.Type type, long amount, long detail, String counterparty) {
+        EventBus.current().publish(new BankEvent(type, accountNumber, amount, getBalancePaise(), detail,
+                                                 counterparty, clock.millis()));
+    }
+    
+    // Called before taking the monitor: records written until endJournalWait() do not
+    // wait for the group commit one by one; endJournalWait(), called once the monitor
+    // is released, waits for all of them. Returns the journal, or null if none.
+    private TransactionJournal deferJournalWait() {
+        TransactionJournal journal = this.journal;
+        if (journal != null) {
+            journal.beginBatch();
+        }
+        return journal;
+    }
+    
+    private static void endJournalWait(TransactionJournal journal) {
+        if (journal != null) {
+            journal.endBatch();
+        }
+    }
+    
+    // Records written between these replay together or not at all (see tryTransfer);
+    // pass endJournalGroup()'s result to syncJournal() once the monitor is released
+    protected void beginJournalGroup() {
+        if (journal != null) {
+            journal.beginGroup();
+        }
+    }
+    
+    protected long endJournalGroup() {
+        return journal == null ? -1 : journal.endGroup();
+    }
+    
+    protected void syncJournal(long commit) {
+        if (journal != null) {
+            journal.sync(commit);
+        }
+    }
+    
+    // Journals a state change that has no transaction of its own
+    protected void recordMark(String marker) {
+        if (journal != null) {
+            journalOffset = journal.appendMark(accountNumber, marker, clock.millis());
+        }
+    }
+    
+    // Called by Bank when tiered history is on; older entries then live in the archive
+    synchronized void attachArchive(HistoryArchive archive) {
+        transactions.attachArchive(archive);
+    }
+    
+    // Called by Bank once the account is registered; writes everything recorded so far
+    synchronized void attachJournal(TransactionJournal journal, boolean writeHistory) {
+        this.journal = journal;
+        if (journal != null && writeHistory) {
+            // One group, so an account never replays without its opening deposit. It
+            // counts as open from its first entry, so a replay up to any time that
+            // includes the entry includes the account.
+            long opened = clock.millis();
+            if (transactions.size() > 0) {
+                opened = Math.min(opened, transactions.cursor().at(0).getEpochMillis());
+            }
+            journal.beginGroup();
+            try {
+                journalOffset = journal.appendOpen(this, opened);
+                TransactionStore.Cursor txn = transactions.cursor();
+                for (int i = 0; i < transactions.size(); i++) {
+                    txn.at(i);
+                    journalOffset = journal.appendTransaction(accountNumber, txn.getId(), txn.getType(),
+                                              txn.getAmountMinor(), txn.getBalanceAfterMinor(), txn.getEpochMillis());
+                }
+            } finally {
+                journal.sync(journal.endGroup());
+            }
         }
     }
     
+    // Re-applies one journaled transaction during startup recovery
+    synchronized void replay(Transaction txn) {
+        TransactionIdGenerator.observe(txn.getTransactionNumber());
+        transactions.append(txn.getTransactionNumber(), toEpochMillis(txn.getTimestamp()), txn.getType(),
+                            Money.ofStoredRupees(txn.getAmount()), Money.ofStoredRupees(txn.getBalanceAfter()));
+        setBalancePaise(Money.ofStoredRupees(txn.getBalanceAfter()));
+        long millis = toEpochMillis(txn.getTimestamp());
+        accrue(millis, txn.getType());
+        if (txn.getType().equals("WITHDRAWAL") || txn.getType().equals(TransferBatch.BATCH_DEBIT)) {
+            withdrawalWindow.record(millis, Money.ofStoredRupees(txn.getAmount()));
+        }
+    }
+    
+    // Re-applies one journaled marker during startup recovery
+    synchronized void replayMark(String marker) {
+        if (marker.equals("ACTIVE")) {
+            storeActive(true);
+        } else if (marker.equals("INACTIVE")) {
+            storeActive(false);
+        } else if (marker.startsWith(INTEREST_POSTED_MARK)) {
+            interestPostedPeriod = Integer.parseInt(marker.substring(INTEREST_POSTED_MARK.length()));
+        } else if (marker.startsWith(CHARGES_POSTED_MARK)) {
+            chargesPostedPeriod = Integer.parseInt(marker.substring(CHARGES_POSTED_MARK.length()));
+        } else if (marker.startsWith(HOLDER_NAME_MARK)) {
+            storeHolderName(marker.substring(HOLDER_NAME_MARK.length()));
+        } else if (marker.startsWith(PHONE_MARK)) {
+            storePhoneNumber(marker.substring(PHONE_MARK.length()));
+        } else if (marker.startsWith(EMAIL_MARK)) {
+            storeEmail(marker.substring(EMAIL_MARK.length()));
+        }
+    }
+    
+    // Journal position this account's state reflects; replay skips records at or below it
+    long getJournalOffset() { return journalOffset; }
+    void setJournalOffset(long offset) { journalOffset = offset; }
+    
+    // Empty account of the given type, ready to be rebuilt from a snapshot or the journal
+    static Account restore(String accountNumber, String accountType, String holderName,
+                           String phoneNumber, String email, LocalDate openDate) {
+        return accountType.equals("SAVINGS")
+            ? new SavingsAccount(accountNumber, holderName, phoneNumber, email, openDate)
+            : new CurrentAccount(accountNumber, holderName, phoneNumber, email, openDate);
+    }
+    
+    // ---------------- Snapshot ----------------
+    
+    synchronized void writeSnapshot(BankSnapshot.Out out) throws IOException {
+        out.putString(accountType);
+        out.putString(accountNumber);
+        out.putString(getAccountHolderName());
+        out.putString(getPhoneNumber());
+        out.putString(getEmail());
+        out.putLong(accountOpenDate.toEpochDay());
+        out.putLong(getBalancePaise());
+        out.putBoolean(isActive());
+        out.putInt(interestPostedPeriod);
+        out.putInt(chargesPostedPeriod);
+        out.putLong(journalOffset);
+        WithdrawalWindow.writeSnapshot(withdrawalWindow, out);
+        accrual.writeSnapshot(out);
+        writeSnapshotState(out);
+        transactions.writeSnapshot(out);
+    }
+    
+    static Account readSnapshot(BankSnapshot.In in, byte[] typeCodes) throws IOException {
+        String accountType = in.getString();
+        Account account = restore(in.getString(), accountType, in.getString(), in.getString(),
+                                  in.getString(), LocalDate.ofEpochDay(in.getLong()));
+        account.balance = in.getLong();
+        account.isActive = in.getBoolean();
+        account.interestPostedPeriod = in.getInt();
+        account.chargesPostedPeriod = in.getInt();
+        account.journalOffset = in.getLong();
+        account.withdrawalWindow = WithdrawalWindow.readSnapshot(in);
+        account.accrual.readSnapshot(in);
+        account.readSnapshotState(in);
+        account.transactions.readSnapshot(in, typeCodes);
+        if (account.transactions.size() > 0) {
+            TransactionIdGenerator.observe(account.transactions.idAt(account.transactions.size() - 1));
+        }
+        return account;
+    }
+    
+    // Subclass fields, in the same order for both directions
+    protected void writeSnapshotState(BankSnapshot.Out out) throws IOException {}
+    protected void readSnapshotState(BankSnapshot.In in) throws IOException {}
+    
     // Getters (Encapsulation)
     public String getAccountNumber() { return accountNumber; }
-    public String getAccountHolderName() { return accountHolderName; }
+    public String getAccountHolderName() {
+        return table == null ? accountHolderName : table.getString(row, AccountTable.HOLDER_NAME);
+    }
+    public String getPhoneNumber() {
+        return table == null ? phoneNumber : table.getString(row, AccountTable.PHONE);
+    }
+    public String getEmail() {
+        return table == null ? email : table.getString(row, AccountTable.EMAIL);
+    }
     public String getAccountType() { return accountType; }
-    public boolean isActive() { return isActive; }
-    public void setActive(boolean active) { this.isActive = active; }
+    public LocalDate getAccountOpenDate() { return accountOpenDate; }
+    public boolean isActive() {
+        return table == null ? isActive : table.getFlagVolatile(row, AccountTable.ACTIVE);
+    }
+    
+    public synchronized void setActive(boolean active) {
+        if (totals != null && active != isActive()) {
+            totals.activeChanged(active ? 1 : -1);
+        }
+        storeActive(active);
+        recordMark(active ? "ACTIVE" : "INACTIVE");
+    }
+    
+    // Contact changes go through Bank, which keeps its lookup indexes in step
+    synchronized void setAccountHolderName(String name) {
+        storeHolderName(name);
+        recordMark(HOLDER_NAME_MARK + name);
+    }
+    
+    synchronized void setPhoneNumber(String phone) {
+        storePhoneNumber(phone);
+        recordMark(PHONE_MARK + phone);
+    }
+    
+    synchronized void setEmail(String email) {
+        storeEmail(email);
+        recordMark(EMAIL_MARK + email);
+    }
+    
+    // ---------------- Off-heap storage ----------------
+    
+    // Moves the hot fields (balance, daily limit, withdrawn today, active flag, and the
+    // subclass's own) and the contact details into a new row of 'table'; from then on
+    // this object is a view of that row. Bank calls it when an account is registered.
+    synchronized void moveOffHeap(AccountTable table) {
+        if (this.table != null) {
+            return;
+        }
+        int row = table.allocate();
+        table.putLongVolatile(row, AccountTable.BALANCE, balance);
+        table.putLong(row, AccountTable.DAILY_LIMIT, dailyWithdrawalLimit);
+        table.putFlagVolatile(row, AccountTable.ACTIVE, isActive);
+        table.putString(row, AccountTable.HOLDER_NAME, accountHolderName);
+        table.putString(row, AccountTable.PHONE, phoneNumber);
+        table.putString(row, AccountTable.EMAIL, email);
+        withdrawalWindow = WithdrawalWindow.moveOffHeap(withdrawalWindow, table, row);
+        moveStateOffHeap(table, row);
+        this.row = row;
+        this.table = table;
+        accountHolderName = null;
+        phoneNumber = null;
+        email = null;
+    }
+    
+    // Subclass hook: copy subclass hot fields into the row
+    protected void moveStateOffHeap(AccountTable table, int row) {}
+    
+    protected AccountTable getTable() { return table; }
+    protected int getRow() { return row; }
+    
+    private void storeActive(boolean active) {
+        if (table == null) {
+            isActive = active;
+        } else {
+            table.putFlagVolatile(row, AccountTable.ACTIVE, active);
+        }
+    }
+    
+    private void storeHolderName(String name) {
+        if (table == null) {
+            accountHolderName = name;
+        } else {
+            table.putString(row, AccountTable.HOLDER_NAME, name);
+        }
+    }
+    
+    private void storePhoneNumber(String phone) {
+        if (table == null) {
+            phoneNumber = phone;
+        } else {
+            table.putString(row, AccountTable.PHONE, phone);
+        }
+    }
+    
+    private void storeEmail(String email) {
+        if (table == null) {
+            this.email = email;
+        } else {
+            table.putString(row, AccountTable.EMAIL, email);
+        }
+    }
+    
+    private long getDailyLimitPaise() {
+        return table == null ? dailyWithdrawalLimit : table.getLong(row, AccountTable.DAILY_LIMIT);
+    }
     
     // Protected methods for subclasses
-    protected void setBalance(double balance) { this.balance = balance; }
-    protected List<Transaction> getTransactions() { return transactions; }
-    protected double getDailyWithdrawalLimit() { return dailyWithdrawalLimit; }
+    protected void setBalancePaise(long balance) {
+        if (table == null) {
+            this.balance = balance;
+        } else {
+            table.putLongVolatile(row, AccountTable.BALANCE, balance);
+        }
+    }
+    protected TransactionStore getTransactions() { return transactions; }
+    
+    // Interest accrued on the daily balances since the last credit, at the given annual rate
+    protected synchronized long accruedInterestPaise(long rateBps) {
+        return accrual.interest(clock.millis(), rateBps);
+    }
+    
+    // Average daily closing balance since interest was last credited (or the account opened)
+    public synchronized long getAverageDailyBalancePaise() {
+        return accrual.averageDailyBalance(clock.millis());
+    }
+    protected double getDailyWithdrawalLimit() { return Money.toRupees(getDailyLimitPaise()); }
+    
+    // Swaps the limit window (e.g. to ROLLING_24H); call before the account is used
+    synchronized void setWithdrawalWindow(WithdrawalWindow window) { this.withdrawalWindow = window; }
+    synchronized void setClock(BankClock clock) { this.clock = clock; }
+    protected BankClock getClock() { return clock; }
+    
+    static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
 }
 
 // ================== SAVINGS ACCOUNT (INHERITANCE) ==================
 class SavingsAccount extends Account {
     private static final double INTEREST_RATE = 4.5; // 4.5% per annum
+    private static final long INTEREST_RATE_BPS = 450; // same rate in basis points
     private static final double DAILY_WITHDRAWAL_LIMIT = 50000.0;
-    private static final double FREE_TRANSACTIONS = 5;
+    private static final int FREE_TRANSACTIONS = 5;
+    private static final long CHARGE_PER_TRANSACTION = 1000; // Rs. 10 in paise
     private int monthlyTransactionCount;
     
     public SavingsAccount(String name, String phone, String email, double initialDeposit) {
@@ -312,164 +1108,447 @@ class SavingsAccount extends Account {
         this.monthlyTransactionCount = 1; // Opening deposit counts as 1
     }
     
+    SavingsAccount(String accountNumber, String name, String phone, String email, LocalDate openDate) {
+        super(accountNumber, name, phone, email, "SAVINGS", DAILY_WITHDRAWAL_LIMIT, openDate);
+        this.monthlyTransactionCount = 0;
+    }
+    
     // Polymorphism - Method Overriding
+    // Interest earned on the average daily balance since the last credit
     @Override
-    public double calculateInterest() {
-        double interest = (checkBalance() * INTEREST_RATE) / (100 * 12); // Monthly interest
-        return interest;
+    public long calculateInterestPaise() {
+        return accruedInterestPaise(INTEREST_RATE_BPS);
+    }
+    
+    @Override
+    public synchronized void applyMonthlyCharges() {
+        long charges = deductMonthlyCharges();
+        if (charges > 0) {
+            publish(BankEvent.Type.TRANSACTION_CHARGES_APPLIED, charges, 0, null);
+        }
     }
     
+    // The charge and the reset are one journal group: a reset replayed without its
+    // charge would leave the month unbilled. Inside postMonthEndCharges() this nests
+    // in that group, which the CHARGES_POSTED mark joins.
     @Override
-    public void applyMonthlyCharges() {
-        if (monthlyTransactionCount > FREE_TRANSACTIONS) {
-            double charges = (monthlyTransactionCount - FREE_TRANSACTIONS) * 10.0;
-            if (checkBalance() >= charges) {
-                setBalance(checkBalance() - charges);
-                getTransactions().add(new Transaction("TRANSACTION_CHARGES", charges, checkBalance()));
-                System.out.println("ℹ Monthly transaction charges applied: Rs. " + charges);
+    public synchronized long deductMonthlyCharges() {
+        long charges = 0;
+        long commit = -1;
+        beginJournalGroup();
+        try {
+            if (monthlyTransactionCount > FREE_TRANSACTIONS) {
+                long due = (monthlyTransactionCount - FREE_TRANSACTIONS) * CHARGE_PER_TRANSACTION;
+                if (getBalancePaise() >= due) {
+                    setBalancePaise(Math.subtractExact(getBalancePaise(), due));
+                    recordTransaction("TRANSACTION_CHARGES", due);
+                    charges = due;
+                }
             }
+            monthlyTransactionCount = 0; // Reset for next month
+            recordMark("MONTH_RESET");
+        } finally {
+            commit = endJournalGroup();
         }
-        monthlyTransactionCount = 0; // Reset for next month
+        syncJournal(commit);
+        return charges;
     }
     
+    // Built from constants only, so it is rendered once
+    private static final String FEATURES =
+        "Account Features:\n" +
+        "  • Interest Rate: " + INTEREST_RATE + "% per annum\n" +
+        "  • Free Transactions: " + FREE_TRANSACTIONS + " per month\n" +
+        "  • Transaction Charge: Rs. 10 per transaction after free limit\n" +
+        "  • Daily Withdrawal Limit: Rs. " + String.format("%.2f", DAILY_WITHDRAWAL_LIMIT);
+    
     @Override
     public String getAccountFeatures() {
-        return "Account Features:\n" +
-               "  • Interest Rate: " + INTEREST_RATE + "% per annum\n" +
-               "  • Free Transactions: " + (int)FREE_TRANSACTIONS + " per month\n" +
-               "  • Transaction Charge: Rs. 10 per transaction after free limit\n" +
-               "  • Daily Withdrawal Limit: Rs. " + String.format("%.2f", DAILY_WITHDRAWAL_LIMIT);
+        return FEATURES;
+    }
+    
+    public synchronized void creditInterest() {
+        long interest = creditInterestPaise();
+        publish(BankEvent.Type.INTEREST_CREDITED, interest, INTEREST_RATE_BPS, null);
+    }
+    
+    // Credits this month's interest without printing; returns the paise credited
+    public synchronized long creditInterestPaise() {
+        long interest = calculateInterestPaise();
+        setBalancePaise(Math.addExact(getBalancePaise(), interest));
+        recordTransaction("INTEREST_CREDIT", interest);
+        return interest;
     }
     
-    public void creditInterest() {
-        double interest = calculateInterest();
-        setBalance(checkBalance() + interest);
-        getTransactions().add(new Transaction("INTEREST_CREDIT", interest, checkBalance()));
-        System.out.println("✓ Interest of Rs. " + String.format("%.2f", interest) + 
-                         " credited @ " + INTEREST_RATE + "% per annum!");
+    @Override
+    protected long creditMonthEndInterest() {
+        return creditInterestPaise();
     }
     
-    // Method Overloading
+    // Method Overriding - both the rupee and paise entry points end up here
     @Override
-    public void deposit(double amount) throws InvalidAmountException {
-        super.deposit(amount);
-        monthlyTransactionCount++;
+    public synchronized boolean depositPaise(long amount) throws InvalidAmountException {
+        boolean done = super.depositPaise(amount);
+        if (done) {
+            monthlyTransactionCount++; // nothing to charge for a deposit an inactive account refused
+        }
+        return done;
     }
     
     @Override
-    public void withdraw(double amount) throws InsufficientBalanceException, 
-                                                DailyLimitExceededException, 
-                                                InvalidAmountException {
-        super.withdraw(amount);
-        monthlyTransactionCount++;
+    public synchronized Outcome tryWithdrawPaise(long amount) {
+        Outcome outcome = super.tryWithdrawPaise(amount);
+        if (outcome.isOk()) {
+            monthlyTransactionCount++;
+        }
+        return outcome;
+    }
+    
+    @Override
+    synchronized void replay(Transaction txn) {
+        super.replay(txn);
+        String type = txn.getType();
+        if (type.equals("OPENING_DEPOSIT")) {
+            monthlyTransactionCount = 1;
+        } else if (type.equals("DEPOSIT") || type.equals("WITHDRAWAL")) {
+            monthlyTransactionCount++;
+        }
+    }
+    
+    @Override
+    synchronized void replayMark(String marker) {
+        super.replayMark(marker);
+        if (marker.equals("MONTH_RESET")) {
+            monthlyTransactionCount = 0;
+        }
+    }
+    
+    @Override
+    protected void writeSnapshotState(BankSnapshot.Out out) throws IOException {
+        out.putInt(monthlyTransactionCount);
+    }
+    
+    @Override
+    protected void readSnapshotState(BankSnapshot.In in) throws IOException {
+        monthlyTransactionCount = in.getInt();
     }
 }
 
 // ================== CURRENT ACCOUNT (INHERITANCE) ==================
 class CurrentAccount extends Account {
-    private static final double MONTHLY_MAINTENANCE = 500.0;
+    private static final long MONTHLY_MAINTENANCE = 50000; // Rs. 500 in paise
     private static final double DAILY_WITHDRAWAL_LIMIT = 200000.0;
-    private static final double OVERDRAFT_LIMIT = 50000.0;
-    private double overdraftUsed;
+    private static final long OVERDRAFT_LIMIT = 5000000; // Rs. 50,000 in paise
+    private long overdraftUsed;
     
     public CurrentAccount(String name, String phone, String email, double initialDeposit) {
         super(name, phone, email, "CURRENT", initialDeposit, DAILY_WITHDRAWAL_LIMIT);
-        this.overdraftUsed = 0.0;
+        this.overdraftUsed = 0;
+    }
+    
+    CurrentAccount(String accountNumber, String name, String phone, String email, LocalDate openDate) {
+        super(accountNumber, name, phone, email, "CURRENT", DAILY_WITHDRAWAL_LIMIT, openDate);
+        this.overdraftUsed = 0;
     }
     
     @Override
-    public double calculateInterest() {
-        return 0.0; // Current accounts don't earn interest
+    public long calculateInterestPaise() {
+        return 0; // Current accounts don't earn interest
     }
     
     @Override
-    public void applyMonthlyCharges() {
-        if (checkBalance() >= MONTHLY_MAINTENANCE) {
-            setBalance(checkBalance() - MONTHLY_MAINTENANCE);
-            getTransactions().add(new Transaction("MONTHLY_MAINTENANCE", MONTHLY_MAINTENANCE, checkBalance()));
-            System.out.println("ℹ Monthly maintenance charge applied: Rs. " + MONTHLY_MAINTENANCE);
+    public synchronized void applyMonthlyCharges() {
+        if (deductMonthlyCharges() != CHARGES_NOT_COLLECTED) {
+            publish(BankEvent.Type.MAINTENANCE_CHARGED, MONTHLY_MAINTENANCE, 0, null);
         } else {
-            System.out.println("⚠ Warning: Insufficient balance for monthly maintenance charge!");
+            publish(BankEvent.Type.MAINTENANCE_NOT_COLLECTED, MONTHLY_MAINTENANCE, 0, null);
         }
     }
     
+    @Override
+    public synchronized long deductMonthlyCharges() {
+        if (getBalancePaise() < MONTHLY_MAINTENANCE) {
+            return CHARGES_NOT_COLLECTED;
+        }
+        setBalancePaise(Math.subtractExact(getBalancePaise(), MONTHLY_MAINTENANCE));
+        recordTransaction("MONTHLY_MAINTENANCE", MONTHLY_MAINTENANCE);
+        return MONTHLY_MAINTENANCE;
+    }
+    
+    // Built from constants only, so it is rendered once
+    private static final String FEATURES =
+        "Account Features:\n" +
+        "  • No Interest Earnings\n" +
+        "  • Monthly Maintenance: Rs. " + Money.toRupees(MONTHLY_MAINTENANCE) + "\n" +
+        "  • Overdraft Facility: Rs. " + Money.format(OVERDRAFT_LIMIT) + "\n" +
+        "  • Unlimited Transactions\n" +
+        "  • Daily Withdrawal Limit: Rs. " + String.format("%.2f", DAILY_WITHDRAWAL_LIMIT);
+    
     @Override
     public String getAccountFeatures() {
-        return "Account Features:\n" +
-               "  • No Interest Earnings\n" +
-               "  • Monthly Maintenance: Rs. " + MONTHLY_MAINTENANCE + "\n" +
-               "  • Overdraft Facility: Rs. " + String.format("%.2f", OVERDRAFT_LIMIT) + "\n" +
-               "  • Unlimited Transactions\n" +
-               "  • Daily Withdrawal Limit: Rs. " + String.format("%.2f", DAILY_WITHDRAWAL_LIMIT);
+        return FEATURES;
     }
     
     // Additional method specific to Current Account
-    public void useOverdraft(double amount) throws InvalidAmountException {
+    public synchronized void useOverdraft(double amount) throws InvalidAmountException {
         if (amount <= 0) {
             throw new InvalidAmountException("Overdraft amount must be greater than zero!");
         }
+        long paise = Money.ofRupees(amount);
         
-        if (overdraftUsed + amount > OVERDRAFT_LIMIT) {
-            System.out.println("❌ Overdraft limit exceeded! Available: Rs. " + 
-                             String.format("%.2f", OVERDRAFT_LIMIT - overdraftUsed));
+        if (!useOverdraftPaise(paise)) {
+            publish(BankEvent.Type.OVERDRAFT_LIMIT_EXCEEDED, paise, OVERDRAFT_LIMIT - getOverdraftOutstandingPaise(), null);
             return;
         }
+        publish(BankEvent.Type.OVERDRAFT_USED, paise, getOverdraftOutstandingPaise(), null);
+    }
+    
+    // Paise core of useOverdraft(), no messages; returns false if the limit would be exceeded
+    public synchronized boolean useOverdraftPaise(long amount) throws InvalidAmountException {
+        if (amount <= 0) {
+            throw new InvalidAmountException("Overdraft amount must be greater than zero!");
+        }
+        long used = getOverdraftOutstandingPaise();
+        if (amount > OVERDRAFT_LIMIT - used) {
+            return false;
+        }
         
-        overdraftUsed += amount;
-        setBalance(checkBalance() + amount);
-        getTransactions().add(new Transaction("OVERDRAFT_USED", amount, checkBalance()));
-        System.out.println("✓ Overdraft of Rs. " + String.format("%.2f", amount) + " used!");
-        System.out.println("  Total Overdraft Used: Rs. " + String.format("%.2f", overdraftUsed));
+        long balance = Math.addExact(getBalancePaise(), amount);
+        setOverdraftUsed(used + amount);
+        setBalancePaise(balance);
+        recordTransaction("OVERDRAFT_USED", amount);
+        return true;
     }
     
-    public void repayOverdraft(double amount) throws InvalidAmountException {
+    public synchronized void repayOverdraft(double amount) throws InvalidAmountException {
         if (amount <= 0) {
             throw new InvalidAmountException("Repayment amount must be greater than zero!");
         }
+        long paise = Money.ofRupees(amount);
         
-        if (amount > overdraftUsed) {
-            System.out.println("❌ Repayment amount exceeds overdraft used!");
+        if (!repayOverdraftPaise(paise)) {
+            publish(BankEvent.Type.OVERDRAFT_REPAYMENT_REJECTED, paise, getOverdraftOutstandingPaise(), null);
             return;
         }
+        publish(BankEvent.Type.OVERDRAFT_REPAID, paise, getOverdraftOutstandingPaise(), null);
+    }
+    
+    // Paise core of repayOverdraft(), no messages; returns false if more than the overdraft is repaid
+    public synchronized boolean repayOverdraftPaise(long amount) throws InvalidAmountException {
+        if (amount <= 0) {
+            throw new InvalidAmountException("Repayment amount must be greater than zero!");
+        }
+        long used = getOverdraftOutstandingPaise();
+        if (amount > used) {
+            return false;
+        }
         
-        overdraftUsed -= amount;
-        setBalance(checkBalance() - amount);
-        getTransactions().add(new Transaction("OVERDRAFT_REPAY", amount, checkBalance()));
-        System.out.println("✓ Overdraft repaid: Rs. " + String.format("%.2f", amount));
-        System.out.println("  Remaining Overdraft: Rs. " + String.format("%.2f", overdraftUsed));
+        long balance = Math.subtractExact(getBalancePaise(), amount);
+        setOverdraftUsed(used - amount);
+        setBalancePaise(balance);
+        recordTransaction("OVERDRAFT_REPAY", amount);
+        return true;
+    }
+    
+    @Override
+    synchronized void replay(Transaction txn) {
+        super.replay(txn);
+        if (txn.getType().equals("OVERDRAFT_USED")) {
+            setOverdraftUsed(getOverdraftOutstandingPaise() + Money.ofStoredRupees(txn.getAmount()));
+        } else if (txn.getType().equals("OVERDRAFT_REPAY")) {
+            setOverdraftUsed(getOverdraftOutstandingPaise() - Money.ofStoredRupees(txn.getAmount()));
+        }
+    }
+    
+    @Override
+    protected long getOverdraftOutstandingPaise() {
+        AccountTable table = getTable();
+        return table == null ? overdraftUsed : table.getLong(getRow(), AccountTable.OVERDRAFT_USED);
+    }
+    
+    private void setOverdraftUsed(long used) {
+        AccountTable table = getTable();
+        if (table == null) {
+            overdraftUsed = used;
+        } else {
+            table.putLong(getRow(), AccountTable.OVERDRAFT_USED, used);
+        }
+    }
+    
+    @Override
+    protected void moveStateOffHeap(AccountTable table, int row) {
+        table.putLong(row, AccountTable.OVERDRAFT_USED, overdraftUsed);
+    }
+    
+    @Override
+    protected void writeSnapshotState(BankSnapshot.Out out) throws IOException {
+        out.putLong(getOverdraftOutstandingPaise());
+    }
+    
+    @Override
+    protected void readSnapshotState(BankSnapshot.In in) throws IOException {
+        overdraftUsed = in.getLong();
     }
 }
 
 // ================== BANK CLASS ==================
 class Bank {
+    // Concurrent map: lookups never block, and each account guards its own state
     private Map<String, Account> accounts;
     private String bankName;
     private String ifscCode;
+    private TransactionJournal journal;
+    // Phone, email and holder-name lookups; updated whenever an account is added or edited
+    private final AccountIndex index = new AccountIndex();
+    // Active count and balance totals, kept current by the accounts
+    private final BankTotals totals = new BankTotals();
+    // Off-heap rows for the accounts' hot fields (-Dbank.storage=offheap), or null
+    private final AccountTable table = AccountTable.fromSystemProperties();
+    // Cold history blocks (-Dbank.hotTransactions), or null to keep all history in memory
+    private HistoryArchive archive;
+    // Outcomes of recent idempotent transfers, by client key
+    private final IdempotencyCache transfers = IdempotencyCache.fromSystemProperties();
     
     public Bank(String bankName, String ifscCode) {
         this.bankName = bankName;
         this.ifscCode = ifscCode;
-        this.accounts = new HashMap<>();
+        this.accounts = new ConcurrentHashMap<>();
+        try {
+            this.archive = HistoryArchive.fromSystemProperties();
+        } catch (IOException e) {
+            System.out.println("⚠ History archive unavailable, keeping history in memory: " + e.getMessage());
+        }
+    }
+    
+    // Rebuilds all accounts from the journal, then journals every later operation
+    public Bank(String bankName, String ifscCode, TransactionJournal journal) throws IOException {
+        this(bankName, ifscCode, journal, null);
+    }
+    
+    // Same, but starts from a snapshot (if the file exists) and replays only the records after it
+    public Bank(String bankName, String ifscCode, TransactionJournal journal, File snapshot) throws IOException {
+        this(bankName, ifscCode);
+        restore(journal, snapshot, Long.MAX_VALUE);
+        for (Account account : accounts.values()) {
+            account.attachJournal(journal, false);
+        }
+        this.journal = journal;
+    }
+    
+    // The bank as it stood at 'asOfMillis', for investigations. The snapshot is used
+    // only if it was finished by then. The result is detached from the journal.
+    static Bank restoreAsOf(String bankName, String ifscCode, TransactionJournal journal, File snapshot,
+                            long asOfMillis) throws IOException {
+        if (snapshot != null && snapshot.exists()
+                && BankSnapshot.readHeader(snapshot).finishedMillis > asOfMillis) {
+            snapshot = null;
+        }
+        Bank bank = new Bank(bankName, ifscCode);
+        if (bank.archive != null) {
+            // Reads the live archive but must not add to it
+            HistoryArchive live = bank.archive;
+            bank.archive = live.readOnlyView();
+            live.close();
+        }
+        bank.restore(journal, snapshot, asOfMillis);
+        return bank;
+    }
+    
+    private void restore(TransactionJournal journal, File snapshot, long untilMillis) throws IOException {
+        long fromOffset = 0;
+        if (snapshot != null && snapshot.exists()) {
+            fromOffset = BankSnapshot.read(snapshot, accounts).journalOffset;
+            for (Account account : accounts.values()) {
+                account.attachArchive(archive);
+            }
+        } else if (archive != null && !archive.isReadOnly()) {
+            archive.truncate(); // the whole history is about to be spilled again
+        }
+        journal.replay(new JournalListener() {
+            @Override
+            public void onOpen(long offset, String accountNumber, String accountType, String holderName,
+                               String phoneNumber, String email, LocalDate openDate) {
+                if (!accounts.containsKey(accountNumber)) {
+                    Account account = Account.restore(accountNumber, accountType, holderName,
+                                                      phoneNumber, email, openDate);
+                    account.setJournalOffset(offset);
+                    account.attachArchive(archive);
+                    accounts.put(accountNumber, account);
+                }
+            }
+            
+            @Override
+            public void onTransaction(long offset, String accountNumber, Transaction transaction)
+                    throws IOException {
+                Account account = journaled(offset, accountNumber);
+                if (offset > account.getJournalOffset()) {
+                    account.replay(transaction);
+                    account.setJournalOffset(offset);
+                }
+            }
+            
+            @Override
+            public void onMark(long offset, String accountNumber, String marker) throws IOException {
+                Account account = journaled(offset, accountNumber);
+                if (offset > account.getJournalOffset()) {
+                    account.replayMark(marker);
+                    account.setJournalOffset(offset);
+                }
+            }
+            
+            // Every account's records follow its OPEN record (or its snapshot entry)
+            private Account journaled(long offset, String accountNumber) throws IOException {
+                Account account = accounts.get(accountNumber);
+                if (account == null) {
+                    throw new IOException("Journal record at offset " + offset + " is for unknown account "
+                                          + accountNumber);
+                }
+                return account;
+            }
+        }, fromOffset, untilMillis);
+        for (Account account : accounts.values()) {
+            if (table != null) {
+                account.moveOffHeap(table);
+            }
+            index.add(account);
+            account.attachTotals(totals);
+        }
     }
     
     public Account createAccount(String name, String phone, String email, 
                                 String accountType, double initialDeposit) {
+        long start = OperationMetrics.start();
+        Account account = openAccount(name, phone, email, accountType, initialDeposit);
+        OperationMetrics.GLOBAL.record(OperationMetrics.Op.CREATE_ACCOUNT, OperationMetrics.kindOf(accountType), start);
+        return account;
+    }
+    
+    private Account openAccount(String name, String phone, String email, String accountType, double initialDeposit) {
+        if (!Money.inRange(initialDeposit)) {
+            System.out.println("❌ " + Money.OUT_OF_RANGE);
+            OperationMetrics.GLOBAL.rejected(OperationMetrics.Op.CREATE_ACCOUNT, OperationMetrics.Rejection.INVALID_AMOUNT);
+            return null;
+        }
         if (initialDeposit < Account.MIN_BALANCE) {
             System.out.println("❌ Initial deposit must be at least Rs. " + Account.MIN_BALANCE);
+            OperationMetrics.GLOBAL.rejected(OperationMetrics.Op.CREATE_ACCOUNT, OperationMetrics.Rejection.INVALID_AMOUNT);
             return null;
         }
         
-        Account account;
-        if (accountType.equalsIgnoreCase("SAVINGS") || accountType.equals("1")) {
-            account = new SavingsAccount(name, phone, email, initialDeposit);
-        } else if (accountType.equalsIgnoreCase("CURRENT") || accountType.equals("2")) {
-            account = new CurrentAccount(name, phone, email, initialDeposit);
-        } else {
+        try {
+            checkContactFields(name, phone, email);
+        } catch (IllegalArgumentException e) {
+            System.out.println("❌ " + e.getMessage());
+            return null;
+        }
+        
+        Account account = newAccount(name, phone, email, accountType, initialDeposit);
+        if (account == null) {
             System.out.println("❌ Invalid account type!");
             return null;
         }
         
-        accounts.put(account.getAccountNumber(), account);
+        registerAccount(account);
         
         System.out.println("\n" + "═".repeat(60));
         System.out.println("           ✓ ACCOUNT CREATED SUCCESSFULLY!");
@@ -483,6 +1562,166 @@ class Bank {
         return account;
     }
     
+    // Builds an account of the given type ("SAVINGS"/"1" or "CURRENT"/"2"); null if the type is unknown
+    static Account newAccount(String name, String phone, String email, String accountType, double initialDeposit) {
+        if (accountType.equalsIgnoreCase("SAVINGS") || accountType.equals("1")) {
+            return new SavingsAccount(name, phone, email, initialDeposit);
+        } else if (accountType.equalsIgnoreCase("CURRENT") || accountType.equals("2")) {
+            return new CurrentAccount(name, phone, email, initialDeposit);
+        }
+        return null;
+    }
+    
+    // Adds an already validated account without any console output (used by bulk import)
+    // Journaled before it becomes visible, so a running snapshot either sees the
+    // account with its records or replays them later - never both
+    // Contact details too long to journal are rejected before the account takes a table row
+    public void registerAccount(Account account) {
+        checkContactFields(account.getAccountHolderName(), account.getPhoneNumber(), account.getEmail());
+        if (table != null) {
+            account.moveOffHeap(table);
+        }
+        account.attachArchive(archive);
+        account.attachJournal(journal, true);
+        accounts.put(account.getAccountNumber(), account);
+        index.add(account);
+        account.attachTotals(totals);
+    }
+    
+    // IllegalArgumentException if a contact field is longer than a journal record can hold
+    static void checkContactFields(String name, String phone, String email) {
+        TransactionJournal.checkField("Holder name", name);
+        TransactionJournal.checkField("Phone number", phone);
+        TransactionJournal.checkField("Email", email);
+    }
+    
+    // ---------------- Idempotent transfers ----------------
+    
+    // Transfer that is safe to retry: the first call with a given key (per debit
+    // account) executes, later calls with the same key get that call's receipt
+    // and move no money. Rejections are reported in the receipt, not thrown.
+    public TransferReceipt transfer(String idempotencyKey, String fromAccount, String toAccount, double amount) {
+        if (idempotencyKey == null || idempotencyKey.isEmpty()
+                || idempotencyKey.length() > IdempotencyCache.MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key must be 1 to "
+                                               + IdempotencyCache.MAX_KEY_LENGTH + " characters");
+        }
+        if (!Money.inRange(amount)) {
+            return new TransferReceipt(idempotencyKey, TransferReceipt.Status.INVALID_AMOUNT, Money.OUT_OF_RANGE, false);
+        }
+        return transfers.execute(fromAccount, idempotencyKey, toAccount, Money.ofStoredRupees(amount),
+                                 () -> executeTransfer(idempotencyKey, fromAccount, toAccount, amount));
+    }
+    
+    private TransferReceipt executeTransfer(String key, String fromAccount, String toAccount, double amount) {
+        Account source = accounts.get(fromAccount);
+        Account target = accounts.get(toAccount);
+        if (source == null || target == null) {
+            return new TransferReceipt(key, TransferReceipt.Status.ACCOUNT_NOT_FOUND,
+                                       "Account not found: " + (source == null ? fromAccount : toAccount), false);
+        }
+        Outcome outcome = source.tryTransfer(target, amount);
+        switch (outcome.status) {
+            case OK:
+                return new TransferReceipt(key, TransferReceipt.Status.COMPLETED, null, false);
+            case ACCOUNT_INACTIVE:
+                return new TransferReceipt(key, TransferReceipt.Status.ACCOUNT_INACTIVE,
+                                           "Account is inactive: " + (source.isActive() ? toAccount : fromAccount), false);
+            case REVERSED:
+                return new TransferReceipt(key, TransferReceipt.Status.REVERSED,
+                                           "Deposit to " + toAccount + " failed; the withdrawal was reversed", false);
+            case INSUFFICIENT_BALANCE:
+                return new TransferReceipt(key, TransferReceipt.Status.INSUFFICIENT_BALANCE, outcome.message(), false);
+            case DAILY_LIMIT_EXCEEDED:
+                return new TransferReceipt(key, TransferReceipt.Status.DAILY_LIMIT_EXCEEDED, outcome.message(), false);
+            default:
+                return new TransferReceipt(key, TransferReceipt.Status.INVALID_AMOUNT, outcome.message(), false);
+        }
+    }
+    
+    // Applies a payroll / bulk-payout batch with netting; see TransferBatch
+    public TransferBatch.Result applyBatch(TransferBatch batch) {
+        return batch.applyTo(accounts::get, journal);
+    }
+    
+    // Keys remembered and their estimated heap, for monitoring
+    long idempotencyKeys() {
+        return transfers.size();
+    }
+    
+    long idempotencyBytes() {
+        return transfers.estimatedBytes();
+    }
+    
+    // ---------------- Lookups and contact updates ----------------
+    
+    public List<Account> findByPhone(String phone) {
+        return resolve(index.findByPhone(phone));
+    }
+    
+    public List<Account> findByEmail(String email) {
+        return resolve(index.findByEmail(email));
+    }
+    
+    // Accounts whose holder name has a word starting with 'prefix', at most 'limit' of them
+    public List<Account> searchByName(String prefix, int limit) {
+        return resolve(index.findByNamePrefix(prefix, limit));
+    }
+    
+    private List<Account> resolve(List<String> accountNumbers) {
+        List<Account> found = new ArrayList<>(accountNumbers.size());
+        for (String accountNumber : accountNumbers) {
+            Account account = accounts.get(accountNumber);
+            if (account != null) {
+                found.add(account);
+            }
+        }
+        return found;
+    }
+    
+    // Each update holds the account's monitor across the change and the re-index,
+    // so concurrent edits of one account cannot leave stale index entries
+    public boolean updateHolderName(String accountNumber, String name) {
+        TransactionJournal.checkField("Holder name", name);
+        Account account = accounts.get(accountNumber);
+        if (account == null) return false;
+        synchronized (account) {
+            String old = account.getAccountHolderName();
+            account.setAccountHolderName(name);
+            index.nameChanged(account, old);
+        }
+        return true;
+    }
+    
+    public boolean updatePhoneNumber(String accountNumber, String phone) {
+        TransactionJournal.checkField("Phone number", phone);
+        Account account = accounts.get(accountNumber);
+        if (account == null) return false;
+        synchronized (account) {
+            String old = account.getPhoneNumber();
+            account.setPhoneNumber(phone);
+            index.phoneChanged(account, old);
+        }
+        return true;
+    }
+    
+    public boolean updateEmail(String accountNumber, String email) {
+        TransactionJournal.checkField("Email", email);
+        Account account = accounts.get(accountNumber);
+        if (account == null) return false;
+        synchronized (account) {
+            String old = account.getEmail();
+            account.setEmail(email);
+            index.emailChanged(account, old);
+        }
+        return true;
+    }
+    
+    // Same lookup without the console message (for non-interactive callers)
+    Account findAccount(String accountNumber) {
+        return accounts.get(accountNumber);
+    }
+    
     public Account getAccount(String accountNumber) {
         Account account = accounts.get(accountNumber);
         if (account == null) {
@@ -492,21 +1731,38 @@ class Bank {
     }
     
     public void displayBankInfo() {
-        System.out.println("\n╔" + "═".repeat(58) + "╗");
-        System.out.println("║" + centerText(bankName, 58) + "║");
-        System.out.println("╠" + "═".repeat(58) + "╣");
-        System.out.println("║  IFSC Code: " + String.format("%-43s", ifscCode) + "║");
-        System.out.println("║  Total Accounts: " + String.format("%-38d", accounts.size()) + "║");
-        System.out.println("║  Active Accounts: " + String.format("%-37d", countActiveAccounts()) + "║");
-        System.out.println("╚" + "═".repeat(58) + "╝\n");
+        StatementRenderer out = StatementRenderer.current();
+        int mark = out.mark();
+        out.append("\n╔").append(StatementRenderer.BOX_RULE_58).line("╗")
+           .append("║").append(centerText(bankName, 58)).line("║")
+           .append("╠").append(StatementRenderer.BOX_RULE_58).line("╣")
+           .append("║  IFSC Code: ").padRight(ifscCode, 43).line("║")
+           .append("║  Total Accounts: ").padRight(accounts.size(), 38).line("║")
+           .append("║  Active Accounts: ").padRight(countActiveAccounts(), 37).line("║")
+           .append("╠").append(StatementRenderer.BOX_RULE_58).line("╣")
+           .append("║  Total Deposits: Rs. ").padRightMoney(getTotalDepositsPaise(), 34).line("║")
+           .append("║  Savings Balance: Rs. ").padRightMoney(getBalancePaise("SAVINGS"), 33).line("║")
+           .append("║  Current Balance: Rs. ").padRightMoney(getBalancePaise("CURRENT"), 33).line("║")
+           .append("║  Overdraft Outstanding: Rs. ").padRightMoney(getOverdraftOutstandingPaise(), 27).line("║")
+           .append("╚").append(StatementRenderer.BOX_RULE_58).line("╝\n");
+        out.printFrom(mark);
     }
     
     private int countActiveAccounts() {
-        int count = 0;
-        for (Account acc : accounts.values()) {
-            if (acc.isActive()) count++;
-        }
-        return count;
+        return (int) totals.activeAccounts();
+    }
+    
+    // Dashboard totals, O(1) regardless of the number of accounts (paise)
+    public long getTotalDepositsPaise() {
+        return totals.totalDepositsPaise();
+    }
+    
+    public long getBalancePaise(String accountType) {
+        return totals.balancePaise(accountType);
+    }
+    
+    public long getOverdraftOutstandingPaise() {
+        return totals.overdraftOutstandingPaise();
     }
     
     private String centerText(String text, int width) {
@@ -517,14 +1773,32 @@ class Bank {
     public int getTotalAccounts() {
         return accounts.size();
     }
+    
+    // Live, read-only view for batch jobs; accounts added meanwhile may or may not appear
+    Collection<Account> getAccounts() {
+        return Collections.unmodifiableCollection(accounts.values());
+    }
+    
+    TransactionJournal getJournal() {
+        return journal;
+    }
+    
+    // Makes spilled history durable (before a snapshot that refers to it is published)
+    void forceHistory() throws IOException {
+        if (archive != null) {
+            archive.force();
+        }
+    }
 }
 
 // ================== MAIN APPLICATION ==================
 public class BankingSystem {
     private static Scanner scanner = new Scanner(System.in);
-    private static Bank bank = new Bank("STATE BANK OF JAVA", "SBOJ0001234");
+    private static Bank bank;
     
     public static void main(String[] args) {
+        bank = openBank();
+        
         System.out.println("\n╔" + "═".repeat(58) + "╗");
         System.out.println("║" + centerText("WELCOME TO BANKING MANAGEMENT SYSTEM", 58) + "║");
         System.out.println("╚" + "═".repeat(58) + "╝\n");
@@ -533,6 +1807,7 @@ public class BankingSystem {
             try {
                 mainMenu();
             } catch (Exception e) {
+                EventBus.current().flush();
                 System.out.println("❌ An error occurred: " + e.getMessage());
             }
         }
@@ -545,7 +1820,9 @@ public class BankingSystem {
         System.out.println("║  1. Create New Account                                   ║");
         System.out.println("║  2. Login to Existing Account                            ║");
         System.out.println("║  3. Display Bank Information                             ║");
-        System.out.println("║  4. Exit                                                 ║");
+        System.out.println("║  4. Run Month-End Processing                             ║");
+        System.out.println("║  5. Find Account                                         ║");
+        System.out.println("║  6. Exit                                                 ║");
         System.out.println("╚" + "═".repeat(58) + "╝");
         System.out.print("\nEnter your choice: ");
         
@@ -562,6 +1839,12 @@ public class BankingSystem {
                 bank.displayBankInfo();
                 break;
             case 4:
+                runMonthEnd();
+                break;
+            case 5:
+                findAccount();
+                break;
+            case 6:
                 System.out.println("\n" + "═".repeat(60));
                 System.out.println(centerText("Thank you for using our Banking System!", 60));
                 System.out.println("═".repeat(60) + "\n");
@@ -572,6 +1855,57 @@ public class BankingSystem {
         }
     }
     
+    private static void runMonthEnd() {
+        scanner.nextLine(); // Clear buffer
+        YearMonth current = YearMonth.now();
+        System.out.print("\nEnter month to close (YYYY-MM) [" + current + "]: ");
+        String input = scanner.nextLine().trim();
+        YearMonth month;
+        try {
+            month = input.isEmpty() ? current : YearMonth.parse(input);
+        } catch (DateTimeParseException e) {
+            System.out.println("❌ Invalid month! Use the format YYYY-MM.");
+            return;
+        }
+        
+        try {
+            MonthEndProcessor processor = new MonthEndProcessor(bank, MonthEndProcessor.defaultCheckpointFile());
+            System.out.println("✓ " + processor.run(month));
+        } catch (IOException e) {
+            System.out.println("❌ Month-end could not run: " + e.getMessage());
+        }
+    }
+    
+    private static void findAccount() {
+        scanner.nextLine(); // Clear buffer
+        System.out.print("\nEnter phone number, email or name: ");
+        String query = scanner.nextLine().trim();
+        if (query.isEmpty()) {
+            System.out.println("❌ Nothing to search for!");
+            return;
+        }
+        
+        List<Account> found;
+        if (query.contains("@")) {
+            found = bank.findByEmail(query);
+        } else if (AccountIndex.normalizePhone(query).length() >= 10) {
+            found = bank.findByPhone(query);
+        } else {
+            found = bank.searchByName(query, 20);
+        }
+        
+        if (found.isEmpty()) {
+            System.out.println("❌ No matching accounts!");
+            return;
+        }
+        System.out.println("\n" + "═".repeat(60));
+        for (Account account : found) {
+            System.out.printf("%-12s %-8s %-22s %s%n", account.getAccountNumber(), account.getAccountType(),
+                              account.getAccountHolderName(), account.getPhoneNumber());
+        }
+        System.out.println("═".repeat(60));
+    }
+    
     private static void createNewAccount() {
         System.out.println("\n" + "═".repeat(60));
         System.out.println(centerText("CREATE NEW ACCOUNT", 60));
@@ -719,9 +2053,40 @@ public class BankingSystem {
                         System.out.println("❌ Invalid choice!");
                 }
             } catch (InsufficientBalanceException | DailyLimitExceededException | InvalidAmountException e) {
+                EventBus.current().flush(); // messages of the failed operation come first
                 System.out.println("\n❌ Transaction Failed!");
                 System.out.println("   " + e.getMessage());
             }
+            EventBus.current().flush();
+        }
+    }
+    
+    // Opens the bank from its journal (-Dbank.journal=none keeps everything in memory)
+    // and publishes the operation metrics (JMX, -Dbank.metricsDumpSeconds)
+    static Bank openBank() {
+        OperationMetrics.GLOBAL.publish();
+        String path = System.getProperty("bank.journal", "bank.journal");
+        if (path.equalsIgnoreCase("none")) {
+            return new Bank("STATE BANK OF JAVA", "SBOJ0001234");
+        }
+        try {
+            TransactionJournal journal = TransactionJournal.fromSystemProperties(new File(path));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    System.out.println("⚠ Journal was not closed cleanly: " + e.getMessage());
+                }
+            }));
+            File snapshot = new File(path + ".snapshot");
+            Bank restored = new Bank("STATE BANK OF JAVA", "SBOJ0001234", journal, snapshot);
+            System.out.println("ℹ Restored " + restored.getTotalAccounts() + " account(s) from " + path);
+            BankSnapshot.schedule(restored, journal, snapshot,
+                                  Long.getLong("bank.snapshotIntervalSeconds", 300));
+            return restored;
+        } catch (IOException e) {
+            System.out.println("⚠ Journal unavailable (" + e.getMessage() + "), running in memory only.");
+            return new Bank("STATE BANK OF JAVA", "SBOJ0001234");
         }
     }
     
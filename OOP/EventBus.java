@@ -0,0 +1,226 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ================== ASYNCHRONOUS DOMAIN-EVENT BUS ==================
+// Account operations publish BankEvents here and return; one dispatcher thread
+// drains the bounded queue in batches and hands each batch to every subscriber
+// (console renderer, audit log, metrics). Console I/O therefore happens off the
+// transaction path. When the queue is full, publishers wait for room, so a slow
+// subscriber slows writers down instead of losing output - but only for up to
+// -Dbank.eventPublishTimeoutMillis (1000). Publishers often hold account
+// monitors, so after that the event leaves the queue path (counted in dropped())
+// rather than stalling every account behind a stuck subscriber. Subscribers that
+// must see every event (lossless(): the audit log, the velocity monitor) then
+// get it on the publishing thread instead, so only the console and metrics
+// miss it; a publisher waits there only if one of those subscribers is itself
+// the stuck one. A subscriber that throws, even an Error, is reported and
+// skipped for that batch.
+//
+// Events from one thread are delivered in the order they were published, except
+// that one delivered directly can reach a lossless subscriber ahead of events
+// still queued.
+// Interactive code calls flush() before it prints, so its own output still
+// appears after the messages of the operation it just ran.
+final class EventBus {
+    interface Subscriber {
+        void onEvents(List<BankEvent> batch);
+
+        // Types this subscriber acts on; a type nobody wants need not be published
+        default boolean wants(BankEvent.Type type) {
+            return true;
+        }
+
+        // Whether it must see every event it wants, even with the queue full
+        default boolean lossless() {
+            return false;
+        }
+    }
+
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final int DEFAULT_BATCH = 256;
+    private static final long PUBLISH_TIMEOUT_MILLIS = Long.getLong("bank.eventPublishTimeoutMillis", 1000);
+
+    private static volatile EventBus current = createDefault();
+
+    private final BlockingQueue<BankEvent> queue;
+    private final int batchSize;
+    private final long publishTimeoutMillis;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private volatile boolean[] wanted = new boolean[BankEvent.Type.values().length];
+    private volatile boolean[] wantedLosslessly = new boolean[BankEvent.Type.values().length];
+    private final Object losslessDelivery = new Object(); // one thread at a time in a lossless subscriber
+    private final Thread dispatcher;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong deliveredDirectly = new AtomicLong();
+    private long delivered; // guarded by "this"
+
+    EventBus(int capacity, int batchSize) {
+        this(capacity, batchSize, PUBLISH_TIMEOUT_MILLIS);
+    }
+
+    EventBus(int capacity, int batchSize, long publishTimeoutMillis) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.publishTimeoutMillis = publishTimeoutMillis;
+        this.dispatcher = new Thread(this::dispatchLoop, "event-bus");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    static EventBus current() {
+        return current;
+    }
+
+    // Bus used by accounts from now on (tests install one without the console)
+    static void setCurrent(EventBus bus) {
+        current = bus;
+    }
+
+    // Console renderer (unless -Dbank.console=false), metrics and the velocity monitor,
+    // plus an audit log when -Dbank.auditLog is set
+    private static EventBus createDefault() {
+        EventBus bus = new EventBus(Integer.getInteger("bank.eventQueueSize", DEFAULT_CAPACITY), DEFAULT_BATCH);
+        if (Boolean.parseBoolean(System.getProperty("bank.console", "true"))) {
+            bus.subscribe(new ConsoleRenderer());
+        }
+        bus.subscribe(EventMetrics.GLOBAL);
+        if (Boolean.parseBoolean(System.getProperty("bank.velocityMonitor", "true"))) {
+            bus.subscribe(VelocityMonitor.GLOBAL);
+        }
+        String auditPath = System.getProperty("bank.auditLog");
+        if (auditPath != null) {
+            try {
+                bus.subscribe(new AuditLog(new File(auditPath)));
+            } catch (IOException e) {
+                System.out.println("⚠ Audit log unavailable: " + e.getMessage());
+            }
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(bus::flush));
+        return bus;
+    }
+
+    synchronized void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+        boolean[] next = wanted.clone();
+        boolean[] nextLossless = wantedLosslessly.clone();
+        for (BankEvent.Type type : BankEvent.Type.values()) {
+            next[type.ordinal()] |= subscriber.wants(type);
+            nextLossless[type.ordinal()] |= subscriber.lossless() && subscriber.wants(type);
+        }
+        wanted = next;
+        wantedLosslessly = nextLossless;
+    }
+
+    // Whether any subscriber acts on events of this type; publishers of frequent
+    // events check it so they do not allocate the event for nobody
+    boolean wants(BankEvent.Type type) {
+        return wanted[type.ordinal()];
+    }
+
+    // ---------------- Publishing ----------------
+
+    void publish(BankEvent event) {
+        published.incrementAndGet();
+        boolean queued = false;
+        try {
+            queued = queue.offer(event) || queue.offer(event, publishTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queued) {
+            published.decrementAndGet();
+            dropped.incrementAndGet();
+            if (wantedLosslessly[event.type.ordinal()]) {
+                deliverDirectly(event);
+            }
+        }
+    }
+
+    // The queue is full: lossless subscribers get the event on this thread
+    private void deliverDirectly(BankEvent event) {
+        List<BankEvent> single = List.of(event);
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.lossless() && subscriber.wants(event.type)) {
+                synchronized (losslessDelivery) {
+                    deliver(subscriber, single);
+                }
+            }
+        }
+        deliveredDirectly.incrementAndGet();
+    }
+
+    // Events that did not go through the queue because it stayed full (or the
+    // publisher was interrupted); subscribers that are not lossless never see them
+    long dropped() {
+        return dropped.get();
+    }
+
+    // Dropped events that lossless subscribers got on the publishing thread
+    long deliveredDirectly() {
+        return deliveredDirectly.get();
+    }
+
+    // Waits until everything published so far has reached every subscriber, or
+    // the dispatcher is gone
+    synchronized void flush() {
+        long target = published.get();
+        boolean interrupted = false;
+        while (delivered < Math.min(target, published.get()) && dispatcher.isAlive()) {
+            try {
+                wait(100);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------------- Dispatch ----------------
+
+    private void dispatchLoop() {
+        List<BankEvent> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.lossless()) {
+                    synchronized (losslessDelivery) {
+                        deliver(subscriber, batch);
+                    }
+                } else {
+                    deliver(subscriber, batch);
+                }
+            }
+            synchronized (this) {
+                delivered += batch.size();
+                notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    private static void deliver(Subscriber subscriber, List<BankEvent> batch) {
+        try {
+            subscriber.onEvents(batch);
+        } catch (Throwable e) {
+            // One broken subscriber must stop neither the others nor the
+            // dispatcher, which publishers and flush() depend on
+            System.err.println("⚠ Event subscriber failed: " + e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// ================== CONSOLE RENDERER ==================
+// Prints the same messages the account operations used to print themselves,
+// one batch at a time on the event-bus thread.
+class ConsoleRenderer implements EventBus.Subscriber {
+    @Override
+    public boolean wants(BankEvent.Type type) {
+        return type != BankEvent.Type.TRANSACTION_RECORDED;
+    }
+
+    @Override
+    public void onEvents(List<BankEvent> batch) {
+        PrintStream out = System.out;
+        for (BankEvent event : batch) {
+            render(out, event);
+        }
+        out.flush();
+    }
+
+    private static void render(PrintStream out, BankEvent event) {
+        switch (event.type) {
+            case DEPOSITED:
+                out.println("✓ Rs. " + Money.format(event.amount) + " deposited successfully!");
+                out.println("  New Balance: Rs. " + Money.format(event.balanceAfter));
+                break;
+            case WITHDRAWN:
+                out.println("✓ Rs. " + Money.format(event.amount) + " withdrawn successfully!");
+                out.println("  New Balance: Rs. " + Money.format(event.balanceAfter));
+                out.println("  Remaining Daily Limit: Rs. " + Money.format(event.detail));
+                break;
+            case ACCOUNT_INACTIVE:
+                out.println("❌ Account is inactive! Cannot perform transaction.");
+                break;
+            case TRANSFER_STARTED:
+                out.println("\n💸 Initiating transfer...");
+                break;
+            case TRANSFERRED:
+                out.println("✓ Transfer successful!");
+                out.println("  Rs. " + Money.format(event.amount) + " transferred to " + event.counterparty);
+                break;
+            case TRANSFER_FAILED:
+                out.println("❌ Transfer failed! Amount reverted.");
+                break;
+            case TRANSFER_TARGET_INACTIVE:
+                out.println("❌ Transfer failed! Account " + event.counterparty + " is inactive.");
+                break;
+            case OVERDRAFT_USED:
+                out.println("✓ Overdraft of Rs. " + Money.format(event.amount) + " used!");
+                out.println("  Total Overdraft Used: Rs. " + Money.format(event.detail));
+                break;
+            case OVERDRAFT_LIMIT_EXCEEDED:
+                out.println("❌ Overdraft limit exceeded! Available: Rs. " + Money.format(event.detail));
+                break;
+            case OVERDRAFT_REPAID:
+                out.println("✓ Overdraft repaid: Rs. " + Money.format(event.amount));
+                out.println("  Remaining Overdraft: Rs. " + Money.format(event.detail));
+                break;
+            case OVERDRAFT_REPAYMENT_REJECTED:
+                out.println("❌ Repayment amount exceeds overdraft used!");
+                break;
+            case INTEREST_CREDITED:
+                out.println("✓ Interest of Rs. " + Money.format(event.amount) +
+                            " credited @ " + event.detail / 100.0 + "% per annum!");
+                break;
+            case TRANSACTION_CHARGES_APPLIED:
+                out.println("ℹ Monthly transaction charges applied: Rs. " + Money.toRupees(event.amount));
+                break;
+            case MAINTENANCE_CHARGED:
+                out.println("ℹ Monthly maintenance charge applied: Rs. " + Money.toRupees(event.amount));
+                break;
+            case MAINTENANCE_NOT_COLLECTED:
+                out.println("⚠ Warning: Insufficient balance for monthly maintenance charge!");
+                break;
+            default:
+                // Rejections are reported to the user through the exception message
+                break;
+        }
+    }
+}
+
+// ================== AUDIT LOG ==================
+// Appends one tab-separated line per event (see BankEvent.toString) and
+// flushes once per batch. Lossless: events the bus queue has no room for are
+// written from the publishing thread rather than left out.
+class AuditLog implements EventBus.Subscriber, AutoCloseable {
+    private final Writer out;
+
+    AuditLog(File file) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean lossless() {
+        return true;
+    }
+
+    @Override
+    public void onEvents(List<BankEvent> batch) {
+        try {
+            for (BankEvent event : batch) {
+                out.write(event.toString());
+                out.write('\n');
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write audit log", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
+
+// ================== EVENT METRICS ==================
+// Count and total amount per event type. TRANSACTION_RECORDED is counted only
+// when another subscriber (velocity monitor, audit log) has it published.
+final class EventMetrics implements EventBus.Subscriber {
+    static final EventMetrics GLOBAL = new EventMetrics();
+
+    private final LongAdder[] counts = new LongAdder[BankEvent.Type.values().length];
+    private final LongAdder[] amounts = new LongAdder[BankEvent.Type.values().length];
+
+    EventMetrics() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+            amounts[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public boolean wants(BankEvent.Type type) {
+        return type != BankEvent.Type.TRANSACTION_RECORDED;
+    }
+
+    @Override
+    public void onEvents(List<BankEvent> batch) {
+        for (BankEvent event : batch) {
+            counts[event.type.ordinal()].increment();
+            amounts[event.type.ordinal()].add(event.amount);
+        }
+    }
+
+    long count(BankEvent.Type type) {
+        return counts[type.ordinal()].sum();
+    }
+
+    long totalPaise(BankEvent.Type type) {
+        return amounts[type.ordinal()].sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (BankEvent.Type type : BankEvent.Type.values()) {
+            long count = count(type);
+            if (count > 0) {
+                text.append(String.format("%-30s %,12d  Rs. %s%n", type, count, Money.format(totalPaise(type))));
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,336 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// ================== COLD TRANSACTION HISTORY ==================
+// Append-only file of compressed history blocks shared by all accounts. When an
+// account's in-memory history reaches twice the hot size, its oldest entries are
+// written here as one block and dropped from memory (see TransactionStore), so
+// memory per account stays bounded however old the account is.
+//
+// Each block links back to the account's previous block, so an account only
+// keeps the offset of its newest block; older ones are found by walking the chain.
+//
+// Block layout (big-endian):
+//   long previousBlock | int count | int firstIndex | long firstMillis | long lastMillis
+//   int rawLength | int compressedLength | deflated payload
+// Payload: the block's type table (code, name), then the columns - ids, times and
+// balances as deltas, everything as zig-zag varints except the one-byte type codes.
+//
+// The journal stays the source of truth: a restart without a snapshot rebuilds the
+// archive from it. Enabled with -Dbank.hotTransactions=<entries kept in memory>.
+final class HistoryArchive implements AutoCloseable {
+    static final int HEADER_BYTES = 40;
+    static final long NO_BLOCK = -1;
+
+    private final File file;
+    private final FileChannel channel;
+    private final int hotSize;
+    private final boolean readOnly;
+    private long end; // guarded by "this"
+
+    HistoryArchive(File file, int hotSize, boolean readOnly) throws IOException {
+        this.file = file;
+        this.channel = readOnly
+            ? FileChannel.open(file.toPath(), StandardOpenOption.READ)
+            : FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                               StandardOpenOption.WRITE);
+        // Room for two hot windows in the first history chunk
+        this.hotSize = Math.max(8, Math.min(hotSize, TransactionStore.CHUNK_SIZE / 2));
+        this.readOnly = readOnly;
+        this.end = channel.size();
+    }
+
+    // -Dbank.hotTransactions (0 = keep all history in memory),
+    // -Dbank.historyArchive (default: the journal path + ".history")
+    static HistoryArchive fromSystemProperties() throws IOException {
+        int hot = Integer.getInteger("bank.hotTransactions", 0);
+        if (hot <= 0) {
+            return null;
+        }
+        String path = System.getProperty("bank.historyArchive",
+                                         System.getProperty("bank.journal", "bank.journal") + ".history");
+        return new HistoryArchive(new File(path), hot, false);
+    }
+
+    // Same file, for reading only (point-in-time restores must not add blocks)
+    HistoryArchive readOnlyView() throws IOException {
+        return new HistoryArchive(file, hotSize, true);
+    }
+
+    int hotSize() {
+        return hotSize;
+    }
+
+    boolean isReadOnly() {
+        return readOnly;
+    }
+
+    // Drops every block; used when the history is about to be rebuilt from the journal
+    synchronized void truncate() throws IOException {
+        channel.truncate(0);
+        end = 0;
+    }
+
+    // Makes written blocks durable before a snapshot refers to them
+    void force() throws IOException {
+        if (!readOnly) {
+            channel.force(false);
+        }
+    }
+
+    // ---------------- Writing ----------------
+
+    // Writes entries [from, from + count) of the given columns; returns the block's offset
+    long write(long previousBlock, int firstIndex, long[] ids, long[] millis, long[] amounts,
+               long[] balances, byte[] codes, int[] counterparties, int from, int count) {
+        byte[][] typeNames = typeNames(codes, from, count);
+        int tableBytes = 1;
+        for (byte[] name : typeNames) {
+            tableBytes += name == null ? 0 : 2 + name.length;
+        }
+        ByteBuffer raw = ByteBuffer.allocate(tableBytes + count * 47);
+        writeTypeTable(raw, typeNames);
+        long previous = 0;
+        for (int i = from; i < from + count; i++) {
+            putVarLong(raw, ids[i] - previous);
+            previous = ids[i];
+        }
+        previous = millis[from];
+        for (int i = from; i < from + count; i++) {
+            putVarLong(raw, millis[i] - previous);
+            previous = millis[i];
+        }
+        for (int i = from; i < from + count; i++) {
+            putVarLong(raw, amounts[i]);
+        }
+        previous = 0;
+        for (int i = from; i < from + count; i++) {
+            putVarLong(raw, balances[i] - previous);
+            previous = balances[i];
+        }
+        raw.put(codes, from, count);
+        for (int i = from; i < from + count; i++) {
+            putVarLong(raw, counterparties[i]);
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(raw.array(), 0, raw.position());
+        deflater.finish();
+        byte[] compressed = new byte[raw.position() + 64];
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+        deflater.end();
+
+        ByteBuffer block = ByteBuffer.allocate(HEADER_BYTES + compressedLength);
+        block.putLong(previousBlock).putInt(count).putInt(firstIndex)
+             .putLong(millis[from]).putLong(millis[from + count - 1])
+             .putInt(raw.position()).putInt(compressedLength)
+             .put(compressed, 0, compressedLength)
+             .flip();
+        return append(block);
+    }
+
+    private synchronized long append(ByteBuffer block) {
+        if (readOnly) {
+            throw new IllegalStateException("History archive is read-only: " + file);
+        }
+        long offset = end;
+        try {
+            long position = offset;
+            while (block.hasRemaining()) {
+                position += channel.write(block, position);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write history archive " + file, e);
+        }
+        end += block.limit();
+        return offset;
+    }
+
+    // UTF-8 name of each code used in the block, indexed by code; null for unused codes
+    private static byte[][] typeNames(byte[] codes, int from, int count) {
+        byte[][] names = new byte[128][];
+        for (int i = from; i < from + count; i++) {
+            if (names[codes[i]] == null) {
+                byte[] name = TransactionTypes.name(codes[i]).getBytes(StandardCharsets.UTF_8);
+                if (name.length > TransactionTypes.MAX_NAME_BYTES) {
+                    throw new IllegalStateException("Transaction type too long to archive: "
+                                                    + TransactionTypes.name(codes[i]));
+                }
+                names[codes[i]] = name;
+            }
+        }
+        return names;
+    }
+
+    // Distinct codes in the block with their names, so another process can remap them
+    private static void writeTypeTable(ByteBuffer raw, byte[][] names) {
+        int distinct = 0;
+        for (byte[] name : names) {
+            distinct += name == null ? 0 : 1;
+        }
+        raw.put((byte) distinct);      // up to 128, read back unsigned
+        for (int code = 0; code < names.length; code++) {
+            if (names[code] != null) {
+                raw.put((byte) code).put((byte) names[code].length).put(names[code]);
+            }
+        }
+    }
+
+    // ---------------- Reading ----------------
+
+    // Header only: where the previous block is and which entries this one holds
+    Block readHeader(long offset) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(header, offset);
+        header.flip();
+        Block block = new Block(offset);
+        block.previous = header.getLong();
+        block.count = header.getInt();
+        block.firstIndex = header.getInt();
+        block.firstMillis = header.getLong();
+        block.lastMillis = header.getLong();
+        block.rawLength = header.getInt();
+        block.compressedLength = header.getInt();
+        return block;
+    }
+
+    Block read(long offset) {
+        Block block = readHeader(offset);
+        ByteBuffer compressed = ByteBuffer.allocate(block.compressedLength);
+        readFully(compressed, offset + HEADER_BYTES);
+        byte[] bytes = new byte[block.rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array());
+            int inflated = 0;
+            while (inflated < bytes.length && !inflater.finished()) {
+                int n = inflater.inflate(bytes, inflated, bytes.length - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("block ends early");
+                }
+                inflated += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt history block at " + offset + " in " + file, e);
+        } finally {
+            inflater.end();
+        }
+
+        ByteBuffer raw = ByteBuffer.wrap(bytes);
+        byte[] remap = new byte[128];
+        int distinct = raw.get() & 0xFF;
+        for (int i = 0; i < distinct; i++) {
+            byte code = raw.get();
+            byte[] name = new byte[raw.get() & 0xFF];
+            raw.get(name);
+            remap[code] = TransactionTypes.intern(new String(name, StandardCharsets.UTF_8));
+        }
+        int count = block.count;
+        block.ids = new long[count];
+        block.millis = new long[count];
+        block.amounts = new long[count];
+        block.balances = new long[count];
+        block.codes = new byte[count];
+        block.counterparties = new int[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous = block.ids[i] = previous + getVarLong(raw);
+        }
+        previous = block.firstMillis;
+        for (int i = 0; i < count; i++) {
+            previous = block.millis[i] = previous + getVarLong(raw);
+        }
+        for (int i = 0; i < count; i++) {
+            block.amounts[i] = getVarLong(raw);
+        }
+        previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous = block.balances[i] = previous + getVarLong(raw);
+        }
+        raw.get(block.codes);
+        for (int i = 0; i < count; i++) {
+            block.codes[i] = remap[block.codes[i]];
+            block.counterparties[i] = (int) getVarLong(raw);
+        }
+        return block;
+    }
+
+    private void readFully(ByteBuffer buf, long position) {
+        try {
+            while (buf.hasRemaining()) {
+                int read = channel.read(buf, position + buf.position());
+                if (read < 0) {
+                    throw new IllegalStateException("History archive " + file + " is truncated");
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read history archive " + file, e);
+        }
+    }
+
+    // ---------------- Varints ----------------
+
+    private static void putVarLong(ByteBuffer buf, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buf.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buf.put((byte) zigzag);
+    }
+
+    private static long getVarLong(ByteBuffer buf) {
+        long zigzag = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buf.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ================== ONE BLOCK ==================
+    // Header fields always; the columns only once read() has decoded the payload.
+    static final class Block {
+        final long offset;
+        long previous;
+        int count;
+        int firstIndex;
+        long firstMillis;
+        long lastMillis;
+        int rawLength;
+        int compressedLength;
+
+        long[] ids;
+        long[] millis;
+        long[] amounts;
+        long[] balances;
+        byte[] codes;
+        int[] counterparties;
+
+        Block(long offset) {
+            this.offset = offset;
+        }
+    }
+}
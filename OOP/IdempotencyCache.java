@@ -0,0 +1,236 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// ================== TRANSFER DEDUPE CACHE ==================
+// Remembers the outcome of each idempotent transfer by its client key, so a
+// retry (e.g. after a timeout) gets the first call's receipt instead of moving
+// the money again. Keys live in two generations of concurrent maps:
+//
+//   current  - keys seen since the last rotation; new keys go here
+//   previous - the generation before; still answered, never added to
+//
+// Rotation starts an empty current generation and drops the old previous one
+// in one step, so eviction costs nothing per key. A generation is rotated when
+// it is -Dbank.idempotencyTtlMinutes old (default 60), or earlier when its
+// estimated size reaches half of -Dbank.idempotencyMaxMB (default 256), so a
+// key is remembered for at least the TTL unless the memory cap has to win.
+// At 1M keys an hour the default cap keeps the full hour.
+//
+// Lookups are lock-free map reads; a new key costs one putIfAbsent, re-checked
+// against the newest generation so a rotation in between cannot let two calls
+// both claim the key. Keys are kept as a 128-bit hash of (debit account, key) -
+// not the key text - so an entry has a fixed size; the transfer a key was used
+// for is a 128-bit hash of (target account, amount). Only this process
+// remembers keys: after a restart a retry executes again.
+final class IdempotencyCache {
+    static final int MAX_KEY_LENGTH = 128;
+    // Heap per entry: map node, hashed key, entry with its request hash and the table slot
+    // (measured on a 64-bit JVM)
+    static final int ENTRY_BYTES = 152;
+
+    private final BankClock clock;
+    private final long generationMillis;
+    private final long generationBytes;
+    private volatile Generations generations;
+
+    IdempotencyCache(BankClock clock, long ttlMillis, long maxBytes) {
+        this.clock = clock;
+        this.generationMillis = Math.max(1, ttlMillis);
+        this.generationBytes = Math.max(ENTRY_BYTES, maxBytes / 2);
+        this.generations = new Generations(new ConcurrentHashMap<>(), clock.millis());
+    }
+
+    static IdempotencyCache fromSystemProperties() {
+        return new IdempotencyCache(BankClock.current(),
+                                    Long.getLong("bank.idempotencyTtlMinutes", 60) * 60_000,
+                                    Long.getLong("bank.idempotencyMaxMB", 256) << 20);
+    }
+
+    // Runs 'transfer' the first time (scope, key) is seen and records its receipt;
+    // afterwards answers from the cache. The target account and amount (paise)
+    // identify the transfer the key was first used for, so a key reused for a
+    // different one is refused.
+    TransferReceipt execute(String scope, String key, String toAccount, long amount,
+                            Supplier<TransferReceipt> transfer) {
+        Key hashed = Key.of(scope, key);
+        Key request = Key.request(toAccount, amount);
+        Generations g = generations();
+        Entry recorded = g.previous.get(hashed);
+        if (recorded == null) {
+            Entry mine = new Entry(request);
+            List<ConcurrentHashMap<Key, Entry>> claimed = new ArrayList<>(1);
+            recorded = claim(g, hashed, mine, claimed);
+            if (recorded == null) {
+                g.bytes.addAndGet(ENTRY_BYTES);
+                TransferReceipt receipt;
+                try {
+                    receipt = transfer.get();
+                } catch (RuntimeException | Error e) {
+                    for (ConcurrentHashMap<Key, Entry> map : claimed) {
+                        map.remove(hashed, mine); // no outcome to remember; a retry may run again
+                    }
+                    throw e;
+                }
+                mine.complete(receipt);
+                if (receipt.message != null) {
+                    g.bytes.addAndGet(40 + 2L * receipt.message.length());
+                }
+                return receipt;
+            }
+        }
+        return recorded.replay(key, request);
+    }
+
+    // Puts 'mine' into g's current generation: null if it now owns the key, else the
+    // entry that does. If a rotation happened since g was read, that map has become
+    // the previous generation, which a newer caller may already have checked, so
+    // the put is repeated in the newest current generation. Every map 'mine' went
+    // into is added to 'claimed'.
+    private Entry claim(Generations g, Key key, Entry mine, List<ConcurrentHashMap<Key, Entry>> claimed) {
+        while (true) {
+            Entry recorded = g.current.putIfAbsent(key, mine);
+            if (recorded == null) {
+                claimed.add(g.current);
+                Generations now = generations;
+                if (now == g) {
+                    return null;
+                }
+                g = now;
+                recorded = g.previous.get(key);
+                if (recorded == null || recorded == mine) {
+                    continue;
+                }
+            }
+            for (ConcurrentHashMap<Key, Entry> map : claimed) {
+                map.remove(key, mine);
+            }
+            return recorded;
+        }
+    }
+
+    // Keys currently remembered (both generations)
+    long size() {
+        Generations g = generations;
+        return g.current.size() + g.previous.size();
+    }
+
+    // Estimated heap held by the remembered keys
+    long estimatedBytes() {
+        Generations g = generations;
+        return g.bytes.get() + g.previousBytes;
+    }
+
+    // ---------------- Generations ----------------
+
+    private Generations generations() {
+        Generations g = generations;
+        if (clock.millis() - g.startedMillis >= generationMillis || g.bytes.get() >= generationBytes) {
+            g = rotate(g);
+        }
+        return g;
+    }
+
+    private synchronized Generations rotate(Generations seen) {
+        if (generations == seen) {
+            generations = new Generations(seen.current, seen.bytes.get(), clock.millis());
+        }
+        return generations;
+    }
+
+    private static final class Generations {
+        final ConcurrentHashMap<Key, Entry> current = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Key, Entry> previous;
+        final long previousBytes;
+        final AtomicLong bytes = new AtomicLong();
+        final long startedMillis;
+
+        Generations(ConcurrentHashMap<Key, Entry> previous, long startedMillis) {
+            this(previous, 0, startedMillis);
+        }
+
+        Generations(ConcurrentHashMap<Key, Entry> previous, long previousBytes, long startedMillis) {
+            this.previous = previous;
+            this.previousBytes = previousBytes;
+            this.startedMillis = startedMillis;
+        }
+    }
+
+    // ---------------- Entries ----------------
+
+    // Outcome of one key; status stays null while the first call is still running
+    private static final class Entry {
+        final Key request;
+        private volatile TransferReceipt.Status status;
+        private String message; // written before status, read after it
+
+        Entry(Key request) {
+            this.request = request;
+        }
+
+        void complete(TransferReceipt receipt) {
+            message = receipt.message;
+            status = receipt.status;
+        }
+
+        TransferReceipt replay(String key, Key request) {
+            if (!request.equals(this.request)) {
+                return new TransferReceipt(key, TransferReceipt.Status.KEY_REUSED,
+                                           "Idempotency key was already used for a different transfer", false);
+            }
+            TransferReceipt.Status recorded = status;
+            if (recorded == null) {
+                return new TransferReceipt(key, TransferReceipt.Status.IN_PROGRESS,
+                                           "A transfer with this idempotency key is still in progress", false);
+            }
+            return new TransferReceipt(key, recorded, message, true);
+        }
+    }
+
+    // 128-bit hash of the scope and the key: collisions are not a practical concern
+    private static final class Key {
+        final long high;
+        final long low;
+
+        private Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        static Key of(String scope, String key) {
+            long h1 = 0xCBF29CE484222325L;
+            long h2 = 0x9E3779B97F4A7C15L;
+            String text = scope + '\u0000' + key;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                h1 = (h1 ^ c) * 0x100000001B3L;
+                h2 = Long.rotateLeft(h2 + c, 27) * 0xC2B2AE3D27D4EB4FL;
+            }
+            return new Key(mix(h1 ^ text.length()), mix(h2));
+        }
+
+        // The transfer a key is used for: target account and amount in paise
+        static Key request(String toAccount, long amount) {
+            Key target = of(toAccount, "");
+            return new Key(mix(target.high ^ amount), mix(target.low + Long.rotateLeft(amount, 32)));
+        }
+
+        private static long mix(long h) {
+            h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+            h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+            return h ^ (h >>> 33);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key) other).high == high && ((Key) other).low == low;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) low;
+        }
+    }
+}
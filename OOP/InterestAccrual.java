@@ -0,0 +1,96 @@
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+// ================== INCREMENTAL BALANCE-DAY ACCRUAL ==================
+// Running sum of daily closing balances (paise x days) for the current interest
+// period. Each balance change updates it in O(1): the balance that was in effect
+// is added once for every whole day since the previous change, and a later change
+// on the same day just replaces that day's closing balance. Interest and the
+// average daily balance are read in O(1) instead of replaying the history.
+//
+// Not thread-safe; the owning Account's monitor guards it.
+final class InterestAccrual {
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    static final long DAYS_PER_YEAR = 365;
+
+    private long periodStartDay = -1; // epoch day; -1 until the first balance is seen
+    private long lastDay;             // epoch day of the last balance change
+    private long closingBalance;      // balance in effect since lastDay
+    private long balanceDays;         // closing balances summed over [periodStartDay, lastDay)
+
+    // Bounds of the most recently converted day, so most calls skip the time-zone maths
+    private long cachedDay;
+    private long cachedDayStartMillis;
+    private long cachedDayEndMillis;
+
+    void onBalance(long millis, long balance) {
+        long day = dayOf(millis);
+        if (periodStartDay < 0) {
+            periodStartDay = day;
+            lastDay = day;
+        } else if (day > lastDay) {
+            balanceDays += closingBalance * (day - lastDay);
+            lastDay = day;
+        }
+        closingBalance = balance;
+    }
+
+    // Starts a new period on the day of 'millis' (called when interest is credited)
+    void restart(long millis) {
+        long day = dayOf(millis);
+        periodStartDay = day;
+        lastDay = day;
+        balanceDays = 0;
+    }
+
+    // Sum of closing balances from the period start up to, not including, the day of 'asOfMillis'
+    long balanceDays(long asOfMillis) {
+        if (periodStartDay < 0) {
+            return 0;
+        }
+        long day = dayOf(asOfMillis);
+        return day > lastDay ? balanceDays + closingBalance * (day - lastDay) : balanceDays;
+    }
+
+    long daysElapsed(long asOfMillis) {
+        return periodStartDay < 0 ? 0 : Math.max(0, dayOf(asOfMillis) - periodStartDay);
+    }
+
+    // The current balance until a full day has passed
+    long averageDailyBalance(long asOfMillis) {
+        long days = daysElapsed(asOfMillis);
+        return days == 0 ? closingBalance : Money.multiplyRounded(balanceDays(asOfMillis), 1, days);
+    }
+
+    // Simple interest on the daily balances: balance-days x rate / 365
+    long interest(long asOfMillis, long rateBps) {
+        return Money.multiplyRounded(balanceDays(asOfMillis), rateBps, 10000L * DAYS_PER_YEAR);
+    }
+
+    void writeSnapshot(BankSnapshot.Out out) throws IOException {
+        out.putLong(periodStartDay);
+        out.putLong(lastDay);
+        out.putLong(closingBalance);
+        out.putLong(balanceDays);
+    }
+
+    void readSnapshot(BankSnapshot.In in) throws IOException {
+        periodStartDay = in.getLong();
+        lastDay = in.getLong();
+        closingBalance = in.getLong();
+        balanceDays = in.getLong();
+    }
+
+    private long dayOf(long millis) {
+        if (millis >= cachedDayStartMillis && millis < cachedDayEndMillis) {
+            return cachedDay;
+        }
+        LocalDate date = Instant.ofEpochMilli(millis).atZone(ZONE).toLocalDate();
+        cachedDay = date.toEpochDay();
+        cachedDayStartMillis = date.atStartOfDay(ZONE).toInstant().toEpochMilli();
+        cachedDayEndMillis = date.plusDays(1).atStartOfDay(ZONE).toInstant().toEpochMilli();
+        return cachedDay;
+    }
+}
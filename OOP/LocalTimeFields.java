@@ -0,0 +1,72 @@
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+// ================== CACHED LOCAL DATE-TIME FIELDS ==================
+// Splits epoch millis into local date and time fields without building a
+// LocalDateTime per call. The date and UTC offset are looked up once per local
+// day (or per offset change, for zones with daylight saving); every other call
+// is a subtraction and a few divisions. Used by the text renderers, which then
+// write the digits themselves.
+//
+// Not thread-safe: keep one per thread or per writer.
+final class LocalTimeFields {
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final ZoneRules zoneRules;
+
+    int year;
+    int month;
+    int day;
+    int hour;
+    int minute;
+    int second;
+
+    // Millis in [validFrom, validUntil) share the date and the UTC offset
+    private long validFrom = Long.MAX_VALUE;
+    private long validUntil = Long.MIN_VALUE;
+    private long localMidnight; // as millis since the epoch in local time
+    private long offsetMillis;
+
+    LocalTimeFields() {
+        this(ZoneId.systemDefault());
+    }
+
+    LocalTimeFields(ZoneId zone) {
+        this.zoneRules = zone.getRules();
+    }
+
+    LocalTimeFields set(long millis) {
+        if (millis < validFrom || millis >= validUntil) {
+            cacheDay(millis);
+        }
+        int seconds = (int) ((millis + offsetMillis - localMidnight) / 1000);
+        hour = seconds / 3600;
+        minute = seconds / 60 % 60;
+        second = seconds % 60;
+        return this;
+    }
+
+    private void cacheDay(long millis) {
+        Instant instant = Instant.ofEpochMilli(millis);
+        offsetMillis = zoneRules.getOffset(instant).getTotalSeconds() * 1000L;
+        long localDay = Math.floorDiv(millis + offsetMillis, MILLIS_PER_DAY);
+        localMidnight = localDay * MILLIS_PER_DAY;
+        validFrom = localMidnight - offsetMillis;
+        validUntil = validFrom + MILLIS_PER_DAY;
+        ZoneOffsetTransition previous = zoneRules.previousTransition(instant.plusMillis(1));
+        if (previous != null) {
+            validFrom = Math.max(validFrom, previous.getInstant().toEpochMilli());
+        }
+        ZoneOffsetTransition next = zoneRules.nextTransition(instant);
+        if (next != null) {
+            validUntil = Math.min(validUntil, next.getInstant().toEpochMilli());
+        }
+        LocalDate date = LocalDate.ofEpochDay(localDay);
+        year = date.getYear();
+        month = date.getMonthValue();
+        day = date.getDayOfMonth();
+    }
+}
@@ -0,0 +1,79 @@
+import java.math.BigInteger;
+
+// ================== FIXED-POINT MONEY HELPERS ==================
+// All account arithmetic is done in paise held in a long. Conversion to and
+// from rupees (double) and to text only happens at the presentation edge.
+final class Money {
+    static final long PAISE_PER_RUPEE = 100;
+
+    private Money() {}
+
+    // Largest amount taken from a user (Rs. 10^12), far below what a long of paise holds
+    static final double MAX_RUPEES = 1e12;
+    static final long MAX_PAISE = 100_000_000_000_000L;
+    static final String OUT_OF_RANGE = "Amount must be a number of at most Rs. 1000000000000.00!";
+
+    // Rupees entered by a user -> paise, rounded to the nearest paisa; NaN,
+    // infinities and amounts beyond MAX_RUPEES either way are rejected
+    static long ofRupees(double rupees) throws InvalidAmountException {
+        if (!inRange(rupees)) {
+            throw new InvalidAmountException(OUT_OF_RANGE);
+        }
+        return Math.round(rupees * PAISE_PER_RUPEE);
+    }
+
+    // Amounts the bank wrote itself (journal, snapshot, settings), already in range
+    static long ofStoredRupees(double rupees) {
+        return Math.round(rupees * PAISE_PER_RUPEE);
+    }
+
+    static boolean inRange(double rupees) {
+        return Math.abs(rupees) <= MAX_RUPEES; // false for NaN
+    }
+
+    static double toRupees(long paise) {
+        return paise / (double) PAISE_PER_RUPEE;
+    }
+
+    // value * numerator / denominator (denominator > 0), rounded half away from zero.
+    // A product beyond a long is worked out in BigInteger; a result beyond a long
+    // throws ArithmeticException rather than wrapping.
+    static long multiplyRounded(long value, long numerator, long denominator) {
+        long product;
+        try {
+            product = Math.multiplyExact(value, numerator);
+        } catch (ArithmeticException e) {
+            BigInteger[] division = BigInteger.valueOf(value).multiply(BigInteger.valueOf(numerator))
+                                              .divideAndRemainder(BigInteger.valueOf(denominator));
+            BigInteger quotient = division[0];
+            if (division[1].abs().shiftLeft(1).compareTo(BigInteger.valueOf(denominator)) >= 0) {
+                quotient = quotient.add(BigInteger.valueOf(division[1].signum()));
+            }
+            return quotient.longValueExact();
+        }
+        long quotient = product / denominator;
+        long remainder = Math.abs(product % denominator);
+        if (remainder >= denominator - remainder) {
+            quotient += product < 0 ? -1 : 1; // |quotient| < Long.MAX_VALUE here, so no overflow
+        }
+        return quotient;
+    }
+
+    // Same text as String.format("%.2f", rupees) without the formatter
+    static String format(long paise) {
+        return appendTo(new StringBuilder(24), paise).toString();
+    }
+
+    static StringBuilder appendTo(StringBuilder out, long paise) {
+        if (paise < 0) {
+            out.append('-');
+            paise = -paise;
+        }
+        long fraction = paise % PAISE_PER_RUPEE;
+        out.append(paise / PAISE_PER_RUPEE).append('.');
+        if (fraction < 10) {
+            out.append('0');
+        }
+        return out.append(fraction);
+    }
+}
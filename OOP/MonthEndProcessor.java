@@ -0,0 +1,312 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+// ================== PARALLEL MONTH-END PROCESSING ==================
+// Runs month-end over every account of a Bank: interest first, then charges.
+// The accounts are sorted by account number and cut into fixed-size partitions,
+// which a fork-join pool works through in parallel. Nothing is printed per account.
+//
+// A crashed run can simply be started again:
+//   - every account remembers (and journals) the last period each phase ran for,
+//     so no account is credited or charged twice for the same month;
+//   - a partition is appended to the checkpoint file once its journal records are
+//     durable, so the resumed run skips finished partitions without locking them.
+//
+// Checkpoint file: "MONTH_END <yyyymm> <accounts> <partitionSize>", then one
+// "<PHASE> <partition>" line per finished partition. It is only reused when the
+// header matches; otherwise the per-account periods alone prevent double posting.
+class MonthEndProcessor {
+    enum Phase { INTEREST, CHARGES }
+
+    static final int PARTITION_SIZE = 4096;
+
+    private final Bank bank;
+    private final File checkpointFile;
+    private final int parallelism;
+
+    public MonthEndProcessor(Bank bank, File checkpointFile) {
+        this(bank, checkpointFile, Runtime.getRuntime().availableProcessors());
+    }
+
+    public MonthEndProcessor(Bank bank, File checkpointFile, int parallelism) {
+        this.bank = bank;
+        this.checkpointFile = checkpointFile;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    // Next to the journal, e.g. bank.journal.monthend
+    static File defaultCheckpointFile() {
+        return new File(System.getProperty("bank.journal", "bank.journal") + ".monthend");
+    }
+
+    // ================== RUN REPORT ==================
+    static final class PhaseReport {
+        final Phase phase;
+        final long posted;
+        final long alreadyPosted;
+        final long notCollected;
+        final long totalPaise;
+        final double seconds;
+
+        PhaseReport(Phase phase, long posted, long alreadyPosted, long notCollected,
+                    long totalPaise, double seconds) {
+            this.phase = phase;
+            this.posted = posted;
+            this.alreadyPosted = alreadyPosted;
+            this.notCollected = notCollected;
+            this.totalPaise = totalPaise;
+            this.seconds = seconds;
+        }
+
+        @Override
+        public String toString() {
+            String summary = String.format("  %-8s %,d posted, %,d already done", phase, posted, alreadyPosted);
+            if (notCollected > 0) {
+                summary += String.format(", %,d not collected", notCollected);
+            }
+            return summary + String.format(" | Rs. %s in %.2f s", Money.format(totalPaise), seconds);
+        }
+    }
+
+    static final class Report {
+        final YearMonth month;
+        final int accounts;
+        final int partitions;
+        final double snapshotSeconds;
+        final List<PhaseReport> phases;
+        final double seconds;
+
+        Report(YearMonth month, int accounts, int partitions, double snapshotSeconds,
+               List<PhaseReport> phases, double seconds) {
+            this.month = month;
+            this.accounts = accounts;
+            this.partitions = partitions;
+            this.snapshotSeconds = snapshotSeconds;
+            this.phases = phases;
+            this.seconds = seconds;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(String.format(
+                "Month-end %s: %,d account(s) in %d partition(s), %.2f s (snapshot %.2f s)",
+                month, accounts, partitions, seconds, snapshotSeconds));
+            for (PhaseReport phase : phases) {
+                text.append('\n').append(phase);
+            }
+            return text.toString();
+        }
+    }
+
+    // ---------------- Run ----------------
+
+    public Report run(YearMonth month) throws IOException {
+        long start = System.nanoTime();
+        int period = month.getYear() * 100 + month.getMonthValue();
+
+        Account[] accounts = bank.getAccounts().toArray(new Account[0]);
+        Arrays.parallelSort(accounts, Comparator.comparing(Account::getAccountNumber));
+        int partitions = (accounts.length + PARTITION_SIZE - 1) / PARTITION_SIZE;
+        double snapshotSeconds = (System.nanoTime() - start) / 1e9;
+
+        List<PhaseReport> reports = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (Checkpoint checkpoint = Checkpoint.open(checkpointFile,
+                "MONTH_END " + period + " " + accounts.length + " " + PARTITION_SIZE)) {
+            for (Phase phase : Phase.values()) {
+                long phaseStart = System.nanoTime();
+                Tally tally = new Tally();
+                if (partitions > 0) {
+                    pool.invoke(new PartitionTask(phase, period, accounts, 0, partitions, tally, checkpoint));
+                }
+                reports.add(new PhaseReport(phase, tally.posted.sum(), tally.alreadyPosted.sum(),
+                                            tally.notCollected.sum(), tally.totalPaise.sum(),
+                                            (System.nanoTime() - phaseStart) / 1e9));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return new Report(month, accounts.length, partitions, snapshotSeconds, reports,
+                          (System.nanoTime() - start) / 1e9);
+    }
+
+    private static final class Tally {
+        final LongAdder posted = new LongAdder();
+        final LongAdder alreadyPosted = new LongAdder();
+        final LongAdder notCollected = new LongAdder();
+        final LongAdder totalPaise = new LongAdder();
+    }
+
+    // Splits its range of partitions in half until one is left, then processes it
+    private final class PartitionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Phase phase;
+        private final int period;
+        private final Account[] accounts;
+        private final int first;
+        private final int last;
+        private final Tally tally;
+        private final Checkpoint checkpoint;
+
+        PartitionTask(Phase phase, int period, Account[] accounts, int first, int last,
+                      Tally tally, Checkpoint checkpoint) {
+            this.phase = phase;
+            this.period = period;
+            this.accounts = accounts;
+            this.first = first;
+            this.last = last;
+            this.tally = tally;
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first > 1) {
+                int middle = (first + last) >>> 1;
+                invokeAll(new PartitionTask(phase, period, accounts, first, middle, tally, checkpoint),
+                          new PartitionTask(phase, period, accounts, middle, last, tally, checkpoint));
+                return;
+            }
+
+            int from = first * PARTITION_SIZE;
+            int to = Math.min(from + PARTITION_SIZE, accounts.length);
+            if (checkpoint.isDone(phase, first)) {
+                tally.alreadyPosted.add(to - from);
+                return;
+            }
+
+            long posted = 0, alreadyPosted = 0, notCollected = 0, totalPaise = 0;
+            TransactionJournal journal = bank.getJournal();
+            if (journal != null) {
+                journal.beginBatch();
+            }
+            try {
+                for (int i = from; i < to; i++) {
+                    long result = phase == Phase.INTEREST
+                        ? accounts[i].postMonthEndInterest(period)
+                        : accounts[i].postMonthEndCharges(period);
+                    if (result == Account.MONTH_END_ALREADY_POSTED) {
+                        alreadyPosted++;
+                    } else if (result == Account.CHARGES_NOT_COLLECTED) {
+                        posted++;
+                        notCollected++;
+                    } else {
+                        posted++;
+                        totalPaise += result;
+                    }
+                }
+            } finally {
+                // Waits for the partition's journal records before it is checkpointed;
+                // ASYNC never waits, so those are forced here
+                if (journal != null) {
+                    journal.endBatch();
+                    if (journal.getDurability() == TransactionJournal.Durability.ASYNC) {
+                        journal.flush();
+                    }
+                }
+            }
+            checkpoint.markDone(phase, first);
+
+            tally.posted.add(posted);
+            tally.alreadyPosted.add(alreadyPosted);
+            tally.notCollected.add(notCollected);
+            tally.totalPaise.add(totalPaise);
+        }
+    }
+
+    // ---------------- Checkpoint file ----------------
+
+    private static final class Checkpoint implements AutoCloseable {
+        private final BitSet[] done;
+        private final Writer out;
+
+        private Checkpoint(BitSet[] done, Writer out) {
+            this.done = done;
+            this.out = out;
+        }
+
+        // Resumes the file if its header matches this run, otherwise starts it afresh
+        static Checkpoint open(File file, String header) throws IOException {
+            BitSet[] done = new BitSet[Phase.values().length];
+            for (int i = 0; i < done.length; i++) {
+                done[i] = new BitSet();
+            }
+
+            boolean resume = false;
+            if (file.exists()) {
+                try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                    resume = header.equals(reader.readLine());
+                    String line;
+                    while (resume && (line = reader.readLine()) != null) {
+                        int space = line.indexOf(' ');
+                        try {
+                            Phase phase = Phase.valueOf(line.substring(0, Math.max(space, 0)));
+                            done[phase.ordinal()].set(Integer.parseInt(line.substring(space + 1)));
+                        } catch (IllegalArgumentException e) {
+                            break; // a line torn by the crash; its partition simply runs again
+                        }
+                    }
+                }
+            }
+            if (!resume) {
+                for (BitSet phase : done) {
+                    phase.clear();
+                }
+            }
+
+            Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file, resume), StandardCharsets.UTF_8));
+            if (!resume) {
+                out.write(header + "\n");
+                out.flush();
+            }
+            return new Checkpoint(done, out);
+        }
+
+        // Only read while partitions run; the sets are filled before the run starts
+        boolean isDone(Phase phase, int partition) {
+            return done[phase.ordinal()].get(partition);
+        }
+
+        synchronized void markDone(Phase phase, int partition) {
+            try {
+                out.write(phase + " " + partition + "\n");
+                out.flush();
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to write month-end checkpoint", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    // ---------------- Command line ----------------
+
+    // java MonthEndProcessor [YYYY-MM]   (opens the bank from -Dbank.journal like BankingSystem)
+    public static void main(String[] args) throws IOException {
+        YearMonth month = args.length > 0 ? YearMonth.parse(args[0]) : YearMonth.now();
+        Bank bank = BankingSystem.openBank();
+        Report report = new MonthEndProcessor(bank, defaultCheckpointFile()).run(month);
+        System.out.println("✓ " + report);
+    }
+}
@@ -0,0 +1,541 @@
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ObjectName;
+
+// ================== OPERATION LATENCY METRICS ==================
+// How long deposit, withdraw, transferMoney, createAccount and printPassbook
+// take, per account type, plus how often each is rejected and with which
+// exception (a rejection returned as an Outcome counts as the exception the
+// throwing API would have used).
+//
+// Latencies go into log-linear histograms in the style of HdrHistogram: exact
+// below 32 ns, then 32 buckets per power of two, so any percentile is within
+// about 3%. Each thread records into its own Recorder - plain long increments,
+// no atomics or locks - and a reader merges all recorders when it asks.
+// Recorders of threads that have ended are folded into one and dropped whenever
+// the list of recorders has doubled since the last sweep (and at every read),
+// so short-lived session threads do not pile up. Virtual threads are too many
+// and too short-lived for a recorder each: they share one of a few striped
+// recorders, written under that recorder's lock. A recorder only allocates a
+// histogram (about 9.5 KB) for the operation/type pairs its thread actually uses.
+//
+// Readers can be a few increments behind the recording threads; that is the
+// price of not synchronizing the hot path. Timing one operation costs two
+// nanoTime calls and a ThreadLocal lookup, about 90 ns where nanoTime is slow,
+// so only one operation in -Dbank.latencySampleEvery (a power of two, default 4)
+// is timed; the rest cost one ThreadLocalRandom draw. Percentiles come from the
+// sample, counts are scaled up by the rate; rejection counts are exact. See
+// BankBenchmark "metrics". -Dbank.latencySampleEvery=1 times every operation,
+// -Dbank.latencyMetrics=false turns recording off entirely.
+//
+// Exposed over JMX as BankingSystem:type=OperationMetrics and, with
+// -Dbank.metricsDumpSeconds=N, printed every N seconds.
+final class OperationMetrics {
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("bank.latencyMetrics", "true"));
+    static final int SAMPLE_EVERY = Integer.highestOneBit(Math.max(1, Integer.getInteger("bank.latencySampleEvery", 4)));
+    private static final int SAMPLE_MASK = SAMPLE_EVERY - 1;
+
+    enum Op {
+        DEPOSIT("deposit"),
+        WITHDRAW("withdraw"),
+        TRANSFER("transferMoney"),
+        CREATE_ACCOUNT("createAccount"),
+        PRINT_PASSBOOK("printPassbook");
+
+        final String label;
+
+        Op(String label) {
+            this.label = label;
+        }
+    }
+
+    static final String[] KINDS = {"SAVINGS", "CURRENT"};
+
+    // Rejections are counted under the exception the throwing API uses for them
+    enum Rejection {
+        INVALID_AMOUNT("InvalidAmountException"),
+        DAILY_LIMIT_EXCEEDED("DailyLimitExceededException"),
+        INSUFFICIENT_BALANCE("InsufficientBalanceException");
+
+        final String exception;
+
+        Rejection(String exception) {
+            this.exception = exception;
+        }
+    }
+
+    // ---------------- Buckets ----------------
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40; // 2^41 ns is about 36 minutes; longer lands in the last bucket
+    static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS + 1;
+    // Each histogram array is the bucket counts, then the sum and the maximum
+    private static final int SUM = BUCKETS;
+    private static final int MAX = BUCKETS + 1;
+
+    private static final int SLOTS = Op.values().length * KINDS.length;
+
+    // After the constants above, which the constructor needs
+    static final OperationMetrics GLOBAL = new OperationMetrics();
+
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return nanos < 0 ? 0 : (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub;
+    }
+
+    // Largest value that lands in the bucket
+    static long highestIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        if (bucket == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long lowest = (long) (SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    // ---------------- Recording ----------------
+
+    private static final int FIRST_SWEEP = 64;
+    // Thread.isVirtual() where the JDK has virtual threads (see BankServer.perTaskExecutor)
+    private static final Method IS_VIRTUAL = isVirtualMethod();
+
+    private final ThreadLocal<Recorder> recorder = ThreadLocal.withInitial(this::newRecorder);
+    private final List<Recorder> recorders = new ArrayList<>();   // guarded by this
+    private final Recorder retired = new Recorder(null);            // ended threads, guarded by this
+    private final Recorder[] shared = new Recorder[Runtime.getRuntime().availableProcessors()];
+    private int sweepAt = FIRST_SWEEP;                              // guarded by this
+    private final LongAdder[] rejections = new LongAdder[Op.values().length * Rejection.values().length];
+
+    OperationMetrics() {
+        for (int i = 0; i < rejections.length; i++) {
+            rejections[i] = new LongAdder();
+        }
+        for (int i = 0; i < shared.length; i++) {
+            shared[i] = new Recorder(null);
+        }
+    }
+
+    // Start time for record(); 0 when metrics are off or the operation is not sampled
+    static long start() {
+        if (!ENABLED || (SAMPLE_MASK != 0 && (ThreadLocalRandom.current().nextInt() & SAMPLE_MASK) != 0)) {
+            return 0;
+        }
+        return System.nanoTime();
+    }
+
+    static int kindOf(Account account) {
+        return account instanceof CurrentAccount ? 1 : 0;
+    }
+
+    static int kindOf(String accountType) {
+        return accountType.equalsIgnoreCase("CURRENT") || accountType.equals("2") ? 1 : 0;
+    }
+
+    void record(Op op, Account account, long startNanos) {
+        if (startNanos != 0) {
+            add(op.ordinal() * KINDS.length + kindOf(account), System.nanoTime() - startNanos);
+        }
+    }
+
+    void record(Op op, int kind, long startNanos) {
+        if (startNanos != 0) {
+            add(op.ordinal() * KINDS.length + kind, System.nanoTime() - startNanos);
+        }
+    }
+
+    private void add(int slot, long nanos) {
+        Recorder mine = recorder.get();
+        if (mine.owner == null) {
+            synchronized (mine) { // a stripe shared by virtual threads
+                mine.add(slot, nanos);
+            }
+        } else {
+            mine.add(slot, nanos);
+        }
+    }
+
+    void rejected(Op op, Rejection rejection) {
+        if (ENABLED) {
+            rejections[op.ordinal() * Rejection.values().length + rejection.ordinal()].increment();
+        }
+    }
+
+    // Counts a rejected Outcome; accepted and non-exception outcomes are ignored
+    void rejected(Op op, Outcome outcome) {
+        switch (outcome.status) {
+            case INVALID_AMOUNT:
+                rejected(op, Rejection.INVALID_AMOUNT);
+                break;
+            case DAILY_LIMIT_EXCEEDED:
+                rejected(op, Rejection.DAILY_LIMIT_EXCEEDED);
+                break;
+            case INSUFFICIENT_BALANCE:
+                rejected(op, Rejection.INSUFFICIENT_BALANCE);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private synchronized Recorder newRecorder() {
+        Thread thread = Thread.currentThread();
+        if (isVirtual(thread)) {
+            return shared[(int) (thread.getId() % shared.length)];
+        }
+        if (recorders.size() >= sweepAt) {
+            retireEnded();
+            sweepAt = Math.max(FIRST_SWEEP, 2 * recorders.size());
+        }
+        Recorder created = new Recorder(thread);
+        recorders.add(created);
+        return created;
+    }
+
+    private static Method isVirtualMethod() {
+        try {
+            return Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException e) {
+            return null; // no virtual threads on this JDK
+        }
+    }
+
+    private static boolean isVirtual(Thread thread) {
+        try {
+            return IS_VIRTUAL != null && (Boolean) IS_VIRTUAL.invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    // One thread's histograms; only that thread writes them. A recorder without an
+    // owner is the retired total or a stripe shared by virtual threads.
+    private static final class Recorder {
+        final WeakReference<Thread> owner;
+        final long[][] histograms = new long[SLOTS][];
+
+        Recorder(Thread owner) {
+            this.owner = owner != null ? new WeakReference<>(owner) : null;
+        }
+
+        void add(int slot, long nanos) {
+            long[] histogram = histograms[slot];
+            if (histogram == null) {
+                histogram = histograms[slot] = new long[BUCKETS + 2];
+            }
+            histogram[bucket(nanos)]++;
+            histogram[SUM] += nanos;
+            if (nanos > histogram[MAX]) {
+                histogram[MAX] = nanos;
+            }
+        }
+
+        boolean ended() {
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+
+        void addTo(long[] merged, int slot) {
+            long[] histogram = histograms[slot];
+            if (histogram == null) {
+                return;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                merged[i] += histogram[i];
+            }
+            merged[SUM] += histogram[SUM];
+            merged[MAX] = Math.max(merged[MAX], histogram[MAX]);
+        }
+    }
+
+    // ---------------- Reading ----------------
+
+    // Merged view of one operation and account type
+    static final class Histogram {
+        private final long[] counts;
+        private final long count;  // samples, not operations
+
+        private Histogram(long[] counts) {
+            this.counts = counts;
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += counts[i];
+            }
+            this.count = total;
+        }
+
+        // Operations, estimated from the samples
+        long count() {
+            return count * SAMPLE_EVERY;
+        }
+
+        double meanNanos() {
+            return count == 0 ? 0 : counts[SUM] / (double) count;
+        }
+
+        long maxNanos() {
+            return counts[MAX];
+        }
+
+        // Upper bound of the bucket holding the given fraction (0.99 = p99), capped at the maximum
+        long percentileNanos(double fraction) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestIn(i), counts[MAX]);
+                }
+            }
+            return counts[MAX];
+        }
+    }
+
+    synchronized Histogram histogram(Op op, int kind) {
+        retireEnded();
+        int slot = op.ordinal() * KINDS.length + kind;
+        long[] merged = new long[BUCKETS + 2];
+        retired.addTo(merged, slot);
+        for (Recorder stripe : shared) {
+            stripe.addTo(merged, slot);
+        }
+        for (Recorder live : recorders) {
+            live.addTo(merged, slot);
+        }
+        return new Histogram(merged);
+    }
+
+    long rejections(Op op, Rejection rejection) {
+        return rejections[op.ordinal() * Rejection.values().length + rejection.ordinal()].sum();
+    }
+
+    // Folds the recorders of threads that have ended; their counts are final
+    private void retireEnded() {
+        for (Iterator<Recorder> it = recorders.iterator(); it.hasNext(); ) {
+            Recorder recorder = it.next();
+            if (recorder.ended()) {
+                for (int slot = 0; slot < SLOTS; slot++) {
+                    long[] histogram = recorder.histograms[slot];
+                    if (histogram != null) {
+                        long[] into = retired.histograms[slot];
+                        if (into == null) {
+                            into = retired.histograms[slot] = new long[BUCKETS + 2];
+                        }
+                        recorder.addTo(into, slot);
+                    }
+                }
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%-14s %-8s %10s %10s %10s %10s %10s %10s%n",
+                                  "Operation", "Type", "Count", "Mean us", "p50 us", "p99 us", "p99.9 us", "Max us"));
+        for (Op op : Op.values()) {
+            for (int kind = 0; kind < KINDS.length; kind++) {
+                Histogram h = histogram(op, kind);
+                if (h.count() > 0) {
+                    text.append(String.format("%-14s %-8s %,10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                                              op.label, KINDS[kind], h.count(), h.meanNanos() / 1e3,
+                                              h.percentileNanos(0.50) / 1e3, h.percentileNanos(0.99) / 1e3,
+                                              h.percentileNanos(0.999) / 1e3, h.maxNanos() / 1e3));
+                }
+            }
+        }
+        for (Op op : Op.values()) {
+            for (Rejection rejection : Rejection.values()) {
+                long count = rejections(op, rejection);
+                if (count > 0) {
+                    text.append(String.format("Rejected %-14s %-30s %,10d%n", op.label, rejection.exception, count));
+                }
+            }
+        }
+        EventBus bus = EventBus.current();
+        if (bus.dropped() > 0) {
+            text.append(String.format("Events dropped (queue full) %,d, delivered directly to lossless subscribers %,d%n",
+                                      bus.dropped(), bus.deliveredDirectly()));
+        }
+        return text.toString();
+    }
+
+    // ---------------- Publishing ----------------
+
+    private boolean registered;
+
+    // Registers the JMX bean once and starts the text dump if one was asked for
+    synchronized void publish() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(new Bean(this), new ObjectName("BankingSystem:type=OperationMetrics"));
+        } catch (JMException e) {
+            System.out.println("⚠ Operation metrics not available over JMX: " + e.getMessage());
+        }
+        long interval = Long.getLong("bank.metricsDumpSeconds", 0);
+        if (interval > 0) {
+            ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "bank-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.scheduleWithFixedDelay(() -> System.out.print("\n== Operation latency ==\n" + this),
+                                         interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    // Attributes are <operation>.<type>.<statistic>, e.g. withdraw.SAVINGS.p99Micros,
+    // rejected.<operation>.<exception> and the event bus's events.dropped /
+    // events.deliveredDirectly; the "dump" operation returns the text form
+    private static final class Bean implements DynamicMBean {
+        private static final String[] STATISTICS = {"count", "meanMicros", "p50Micros", "p99Micros",
+                                                    "p999Micros", "maxMicros"};
+
+        private final OperationMetrics metrics;
+
+        Bean(OperationMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Object getAttribute(String name) throws AttributeNotFoundException {
+            if (name.equals("events.dropped")) {
+                return EventBus.current().dropped();
+            }
+            if (name.equals("events.deliveredDirectly")) {
+                return EventBus.current().deliveredDirectly();
+            }
+            String[] parts = name.split("\\.");
+            if (parts.length == 3) {
+                if (parts[0].equals("rejected")) {
+                    for (Op op : Op.values()) {
+                        for (Rejection rejection : Rejection.values()) {
+                            if (op.label.equals(parts[1]) && rejection.exception.equals(parts[2])) {
+                                return metrics.rejections(op, rejection);
+                            }
+                        }
+                    }
+                }
+                for (Op op : Op.values()) {
+                    for (int kind = 0; kind < KINDS.length; kind++) {
+                        if (op.label.equals(parts[0]) && KINDS[kind].equals(parts[1])) {
+                            return statistic(metrics.histogram(op, kind), parts[2], name);
+                        }
+                    }
+                }
+            }
+            throw new AttributeNotFoundException(name);
+        }
+
+        private static Object statistic(Histogram h, String statistic, String name) throws AttributeNotFoundException {
+            switch (statistic) {
+                case "count":      return h.count();
+                case "meanMicros": return h.meanNanos() / 1e3;
+                case "p50Micros":  return h.percentileNanos(0.50) / 1e3;
+                case "p99Micros":  return h.percentileNanos(0.99) / 1e3;
+                case "p999Micros": return h.percentileNanos(0.999) / 1e3;
+                case "maxMicros":  return h.maxNanos() / 1e3;
+                default:           throw new AttributeNotFoundException(name);
+            }
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                try {
+                    list.add(new Attribute(name, getAttribute(name)));
+                } catch (AttributeNotFoundException e) {
+                    // left out, as the JMX contract allows
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String action, Object[] params, String[] signature) throws javax.management.ReflectionException {
+            if (action.equals("dump")) {
+                return metrics.toString();
+            }
+            throw new javax.management.ReflectionException(new NoSuchMethodException(action));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (Op op : Op.values()) {
+                for (String kind : KINDS) {
+                    for (String statistic : STATISTICS) {
+                        attributes.add(new MBeanAttributeInfo(op.label + "." + kind + "." + statistic,
+                                                              statistic.equals("count") ? "long" : "double",
+                                                              statistic + " of " + op.label + " on " + kind + " accounts",
+                                                              true, false, false));
+                    }
+                }
+                for (Rejection rejection : Rejection.values()) {
+                    attributes.add(new MBeanAttributeInfo("rejected." + op.label + "." + rejection.exception, "long",
+                                                          op.label + " calls rejected with " + rejection.exception,
+                                                          true, false, false));
+                }
+            }
+            attributes.add(new MBeanAttributeInfo("events.dropped", "long",
+                                                  "Bank events that found the event queue full",
+                                                  true, false, false));
+            attributes.add(new MBeanAttributeInfo("events.deliveredDirectly", "long",
+                                                  "Of those, events handed to lossless subscribers on the publishing thread",
+                                                  true, false, false));
+            MBeanOperationInfo dump = new MBeanOperationInfo("dump", "All histograms and rejection counts as text",
+                                                             new MBeanParameterInfo[0], "java.lang.String",
+                                                             MBeanOperationInfo.INFO);
+            return new MBeanInfo(OperationMetrics.class.getName(), "Bank operation latencies and rejections",
+                                 attributes.toArray(new MBeanAttributeInfo[0]), null,
+                                 new MBeanOperationInfo[] {dump}, null);
+        }
+    }
+}
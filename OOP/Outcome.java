@@ -0,0 +1,90 @@
+// ================== OPERATION OUTCOME ==================
+// Result of Account.tryWithdraw / tryTransfer: a status plus the few numbers
+// the rejection message is made of. The message is only built when someone
+// asks for it, and nothing is thrown, so a rejected withdrawal costs about as
+// much as an accepted one. Outcomes without numbers are shared constants; a
+// rejection with numbers is one small object.
+//
+// withdraw() and transferMoney() are these calls plus throwIfRejected(), which
+// turns a rejection into the exception (and message) they always threw.
+final class Outcome {
+    enum Status {
+        OK,
+        ACCOUNT_INACTIVE,       // nothing was done; not an exception in the throwing API either
+        INVALID_AMOUNT,
+        DAILY_LIMIT_EXCEEDED,
+        INSUFFICIENT_BALANCE,
+        REVERSED                // transfer: the deposit failed and the withdrawal was given back
+    }
+
+    static final Outcome OK = new Outcome(Status.OK, null, 0, 0);
+    static final Outcome ACCOUNT_INACTIVE = new Outcome(Status.ACCOUNT_INACTIVE, "This account is inactive", 0, 0);
+    static final Outcome TARGET_INACTIVE = new Outcome(Status.ACCOUNT_INACTIVE, "The target account is inactive", 0, 0);
+    static final Outcome INVALID_WITHDRAWAL =
+        new Outcome(Status.INVALID_AMOUNT, "Withdrawal amount must be greater than zero!", 0, 0);
+    static final Outcome AMOUNT_OUT_OF_RANGE = new Outcome(Status.INVALID_AMOUNT, Money.OUT_OF_RANGE, 0, 0);
+    static final Outcome REVERSED =
+        new Outcome(Status.REVERSED, "Deposit to the target account failed; the withdrawal was reversed", 0, 0);
+
+    final Status status;
+    private final String text;  // the whole message, or the withdrawal window's label
+    private final long first;   // daily limit, or current balance
+    private final long second;  // withdrawn in the window, or minimum balance
+
+    private Outcome(Status status, String text, long first, long second) {
+        this.status = status;
+        this.text = text;
+        this.first = first;
+        this.second = second;
+    }
+
+    static Outcome dailyLimitExceeded(long dailyLimit, long withdrawn, String window) {
+        return new Outcome(Status.DAILY_LIMIT_EXCEEDED, window, dailyLimit, withdrawn);
+    }
+
+    static Outcome insufficientBalance(long balance, long minimumBalance) {
+        return new Outcome(Status.INSUFFICIENT_BALANCE, null, balance, minimumBalance);
+    }
+
+    boolean isOk() {
+        return status == Status.OK;
+    }
+
+    // Built on demand; null for OK
+    String message() {
+        switch (status) {
+            case DAILY_LIMIT_EXCEEDED:
+                return "Daily withdrawal limit exceeded!\n" +
+                       "  Daily Limit: Rs. " + Money.format(first) + "\n" +
+                       "  Already Withdrawn " + text + ": Rs. " + Money.format(second) + "\n" +
+                       "  Available " + text + ": Rs. " + Money.format(first - second);
+            case INSUFFICIENT_BALANCE:
+                return "Insufficient balance!\n" +
+                       "  Current Balance: Rs. " + Money.format(first) + "\n" +
+                       "  Minimum Balance Required: Rs. " + Money.format(second) + "\n" +
+                       "  Maximum Withdrawal: Rs. " + Money.format(first - second);
+            default:
+                return text;
+        }
+    }
+
+    // The checked-exception form; OK, ACCOUNT_INACTIVE and REVERSED return normally
+    void throwIfRejected() throws InsufficientBalanceException, DailyLimitExceededException,
+                                  InvalidAmountException {
+        switch (status) {
+            case INVALID_AMOUNT:
+                throw new InvalidAmountException(message());
+            case DAILY_LIMIT_EXCEEDED:
+                throw new DailyLimitExceededException(message());
+            case INSUFFICIENT_BALANCE:
+                throw new InsufficientBalanceException(message());
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return status == Status.OK ? "OK" : status + ": " + message();
+    }
+}
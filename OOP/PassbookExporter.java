@@ -0,0 +1,287 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// ================== BULK PASSBOOK EXPORT ==================
+// Writes passbooks straight from the accounts' transaction columns to a file,
+// for regulators and other bulk consumers. Rows are encoded byte by byte into
+// one reused direct buffer and handed to a FileChannel when it fills, so no
+// String, formatter or boxed value is created per row:
+//   - numbers and amounts are written digit by digit;
+//   - dates come from LocalTimeFields, which only does zone lookups once a day;
+//   - type names and the account number are encoded once.
+//
+// CSV: account,transaction_id,timestamp,type,amount,balance_after
+//   ACC00010001,TXN370272102474843136,2026-10-18 18:09:01,DEPOSIT,1.00,5001.00
+// Timestamps are local time (like the passbook); type is the passbook's type text.
+// None of the fields can contain a comma or quote, so nothing needs quoting.
+//
+// BINARY (big-endian):
+//   int MAGIC | int VERSION | long trailerOffset
+//   per account:  short length | account number (UTF-8) | int rows
+//                 rows x (long id | long epochMillis | long amountPaise |
+//                         long balanceAfterPaise | byte typeCode | int counterparty)
+//   trailer:      long accounts | long rows | byte types | types x (byte code | byte length | name)
+// The trailer maps the type codes to names, since codes are only stable within one process.
+//
+// Not thread-safe: use one exporter per thread (e.g. one file per partition).
+final class PassbookExporter implements AutoCloseable {
+    enum Format { CSV, BINARY }
+
+    static final int MAGIC = 0x50424B31; // "PBK1"
+    static final int VERSION = 1;
+
+    private static final byte[] CSV_HEADER =
+        "account,transaction_id,timestamp,type,amount,balance_after\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_ROW_BYTES = 256;
+
+    private final FileChannel channel;
+    private final Format format;
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+    private final byte[] row = new byte[MAX_ROW_BYTES];
+    private final byte[][] typeNames = new byte[128][];
+    private long accounts;
+    private long rows;
+    private long written;
+
+    private final LocalTimeFields time = new LocalTimeFields();
+
+    public PassbookExporter(File file, Format format) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                        StandardOpenOption.TRUNCATE_EXISTING);
+        this.format = format;
+        if (format == Format.CSV) {
+            buf.put(CSV_HEADER);
+        } else {
+            buf.putInt(MAGIC).putInt(VERSION).putLong(0); // trailer offset is filled in by close()
+        }
+    }
+
+    // ---------------- Export ----------------
+
+    // Every account of the bank, in account-number order; returns the rows written
+    public long exportAll(Bank bank, LocalDateTime fromDate, LocalDateTime toDate) throws IOException {
+        List<Account> sorted = new ArrayList<>(bank.getAccounts());
+        sorted.sort(Comparator.comparing(Account::getAccountNumber));
+        long before = rows;
+        for (Account account : sorted) {
+            account.exportPassbook(this, fromDate, toDate);
+        }
+        return rows - before;
+    }
+
+    // Entries [from, to) of one account's history; Account.exportPassbook calls it under the account's monitor
+    void writeRows(String accountNumber, TransactionStore transactions, int from, int to) throws IOException {
+        if (from >= to) {
+            return;
+        }
+        byte[] account = accountNumber.getBytes(StandardCharsets.UTF_8);
+        accounts++;
+        if (format == Format.BINARY) {
+            ensureRoom(account.length + 6);
+            buf.putShort((short) account.length).put(account).putInt(to - from);
+            for (int i = from; i < to; i++) {
+                ensureRoom(37);
+                buf.putLong(transactions.idAt(i))
+                   .putLong(transactions.millisAt(i))
+                   .putLong(transactions.amountAt(i))
+                   .putLong(transactions.balanceAfterAt(i))
+                   .put(transactions.typeCodeAt(i))
+                   .putInt(transactions.counterpartyAt(i));
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                ensureRoom(MAX_ROW_BYTES);
+                buf.put(row, 0, csvRow(account, transactions, i));
+            }
+        }
+        rows += to - from;
+    }
+
+    private int csvRow(byte[] account, TransactionStore transactions, int i) {
+        byte[] out = row;
+        System.arraycopy(account, 0, out, 0, account.length);
+        int at = account.length;
+        out[at++] = ',';
+        out[at++] = 'T';
+        out[at++] = 'X';
+        out[at++] = 'N';
+        at = putDigits(out, at, transactions.idAt(i));
+        out[at++] = ',';
+        at = putTimestamp(out, at, transactions.millisAt(i));
+        out[at++] = ',';
+        byte code = transactions.typeCodeAt(i);
+        byte[] type = typeName(code);
+        System.arraycopy(type, 0, out, at, type.length);
+        at += type.length;
+        if (TransactionTypes.isTransfer(code)) {
+            at = putAccountNumber(out, at, transactions.counterpartyAt(i));
+        }
+        out[at++] = ',';
+        at = putMoney(out, at, transactions.amountAt(i));
+        out[at++] = ',';
+        at = putMoney(out, at, transactions.balanceAfterAt(i));
+        out[at++] = '\n';
+        return at;
+    }
+
+    private byte[] typeName(byte code) {
+        byte[] name = typeNames[code];
+        if (name == null) {
+            name = typeNames[code] = TransactionTypes.name(code).getBytes(StandardCharsets.UTF_8);
+        }
+        return name;
+    }
+
+    // ---------------- Encoding ----------------
+
+    private static int putDigits(byte[] out, int at, long value) {
+        if (value < 0) {
+            out[at++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = at + digits - 1; i >= at; i--) {
+            out[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return at + digits;
+    }
+
+    // Same text as Money.format
+    private static int putMoney(byte[] out, int at, long paise) {
+        if (paise < 0) {
+            out[at++] = '-';
+            paise = -paise;
+        }
+        at = putDigits(out, at, paise / Money.PAISE_PER_RUPEE);
+        long fraction = paise % Money.PAISE_PER_RUPEE;
+        out[at++] = '.';
+        out[at++] = (byte) ('0' + fraction / 10);
+        out[at++] = (byte) ('0' + fraction % 10);
+        return at;
+    }
+
+    // Same text as AccountNumberAllocator.format
+    private static int putAccountNumber(byte[] out, int at, int number) {
+        out[at] = 'A';
+        out[at + 1] = 'C';
+        out[at + 2] = 'C';
+        for (int i = at + 10; i >= at + 3; i--) {
+            out[i] = (byte) ('0' + number % 10);
+            number /= 10;
+        }
+        return at + 11;
+    }
+
+    // "yyyy-MM-dd HH:mm:ss" in local time
+    private int putTimestamp(byte[] out, int at, long millis) {
+        LocalTimeFields local = time.set(millis);
+        int year = local.year;
+        out[at] = (byte) ('0' + year / 1000 % 10);
+        out[at + 1] = (byte) ('0' + year / 100 % 10);
+        out[at + 2] = (byte) ('0' + year / 10 % 10);
+        out[at + 3] = (byte) ('0' + year % 10);
+        out[at + 4] = '-';
+        putTwoDigits(out, at + 5, local.month);
+        out[at + 7] = '-';
+        putTwoDigits(out, at + 8, local.day);
+        out[at + 10] = ' ';
+        putTwoDigits(out, at + 11, local.hour);
+        out[at + 13] = ':';
+        putTwoDigits(out, at + 14, local.minute);
+        out[at + 16] = ':';
+        return putTwoDigits(out, at + 17, local.second);
+    }
+
+    private static int putTwoDigits(byte[] out, int at, int value) {
+        out[at] = (byte) ('0' + value / 10);
+        out[at + 1] = (byte) ('0' + value % 10);
+        return at + 2;
+    }
+
+    // ---------------- Output ----------------
+
+    private void ensureRoom(int bytes) throws IOException {
+        if (buf.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            written += channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    long rowsWritten() {
+        return rows;
+    }
+
+    // Bytes in the file so far (excluding what is still buffered)
+    long bytesWritten() {
+        return written;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            if (format == Format.BINARY) {
+                long trailerOffset = written + buf.position();
+                String[] names = TransactionTypes.names();
+                ensureRoom(17 + names.length * 258);
+                buf.putLong(accounts).putLong(rows).put((byte) names.length);
+                for (int code = 0; code < names.length; code++) {
+                    byte[] name = names[code].getBytes(StandardCharsets.UTF_8);
+                    buf.put((byte) code).put((byte) name.length).put(name);
+                }
+                flush();
+                ByteBuffer offset = ByteBuffer.allocate(Long.BYTES).putLong(trailerOffset).flip();
+                channel.write(offset, 8);
+            } else {
+                flush();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    // ---------------- Command line ----------------
+
+    // java PassbookExporter <file> [csv|binary] [fromDate] [toDate]   (dates as yyyy-MM-dd; bank from -Dbank.journal)
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java PassbookExporter <file> [csv|binary] [yyyy-MM-dd] [yyyy-MM-dd]");
+            return;
+        }
+        Format format = args.length > 1 ? Format.valueOf(args[1].toUpperCase()) : Format.CSV;
+        LocalDateTime from = args.length > 2 ? LocalDate.parse(args[2]).atStartOfDay() : LocalDateTime.of(1970, 1, 1, 0, 0);
+        LocalDateTime to = args.length > 3 ? LocalDate.parse(args[3]).atTime(23, 59, 59) : LocalDateTime.of(9999, 12, 31, 23, 59);
+        Bank bank = BankingSystem.openBank();
+        long start = System.nanoTime();
+        PassbookExporter exporter = new PassbookExporter(new File(args[0]), format);
+        try (exporter) {
+            exporter.exportAll(bank, from, to);
+        }
+        // Counted after close, so the binary trailer is included
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("✓ Exported %,d transaction(s) (%,d bytes) to %s in %.2f s%n",
+                          exporter.rowsWritten(), exporter.bytesWritten(), args[0], seconds);
+    }
+}
@@ -0,0 +1,322 @@
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+// ================== STATEMENT RENDERING ==================
+// Builds the console statements (account info, passbook, mini statement, bank
+// info, transaction rows) as bytes in one reusable buffer per thread and writes
+// each statement, or passbook page, to System.out in a single call. The text is
+// exactly what the old println / String.format code produced:
+//   - separator lines and column headings are encoded once (Fragment);
+//   - numbers, amounts and padding ("%-15s", "%10.2f") are written digit by digit;
+//   - a row's "dd-MM-yyyy HH:mm:ss" is reused while the second is the same;
+//   - ASCII text is copied as is, anything else goes through the charset.
+// Writing bytes skips PrintStream's own char encoder, which used to cost more
+// than the rendering itself.
+//
+// The charset is the one the JVM gives System.out (sun.stdout.encoding, else
+// the default); code that installs a PrintStream with another charset tells
+// the renderer with setCharset. ASCII-compatible charsets only.
+//
+// Callers take the buffer's current length as a mark, append, then print or
+// cut back to the mark, so rendering a Transaction while a statement is being
+// built on the same thread is safe.
+final class StatementRenderer {
+    static final Fragment DOUBLE_RULE_80 = new Fragment("═".repeat(80));
+    static final Fragment DOUBLE_RULE_110 = new Fragment("═".repeat(110));
+    static final Fragment RULE_110 = new Fragment("─".repeat(110));
+    static final Fragment BOX_RULE_58 = new Fragment("═".repeat(58));
+    static final Fragment TRANSACTION_COLUMNS = new Fragment(String.format("%-18s | %-15s | %-14s | %-20s | %s",
+        "Transaction ID", "Type", "Amount", "Balance", "Date & Time"));
+    private static final Fragment NL = new Fragment(System.lineSeparator());
+
+    private static final int RETAINED_CAPACITY = 1 << 16; // larger buffers are dropped after printing
+    private static final ThreadLocal<StatementRenderer> CURRENT = ThreadLocal.withInitial(StatementRenderer::new);
+    private static volatile Charset charset = consoleCharset();
+
+    private byte[] buf = new byte[8192];
+    private int length;
+    private final LocalTimeFields time = new LocalTimeFields();
+    private long cachedSecond = Long.MIN_VALUE;
+    private final byte[] timestamp = new byte[19];
+
+    private StatementRenderer() {}
+
+    static StatementRenderer current() {
+        return CURRENT.get();
+    }
+
+    // Drops this thread's renderer once nothing is pending in it, for threads
+    // that render rarely and should not keep the buffer (server sessions)
+    static void release() {
+        if (CURRENT.get().length == 0) {
+            CURRENT.remove();
+        }
+    }
+
+    // The charset System.out encodes with
+    static void setCharset(Charset outputCharset) {
+        charset = outputCharset;
+    }
+
+    private static Charset consoleCharset() {
+        try {
+            String name = System.getProperty("sun.stdout.encoding");
+            return name != null ? Charset.forName(name) : Charset.defaultCharset();
+        } catch (IllegalArgumentException e) {
+            return Charset.defaultCharset();
+        }
+    }
+
+    // ================== PRE-ENCODED TEXT ==================
+    // Constant text, encoded once per charset
+    static final class Fragment {
+        private final String text;
+        private volatile Encoded encoded;
+
+        private static final class Encoded {
+            final Charset charset;
+            final byte[] bytes;
+
+            Encoded(Charset charset, byte[] bytes) {
+                this.charset = charset;
+                this.bytes = bytes;
+            }
+        }
+
+        Fragment(String text) {
+            this.text = text;
+        }
+
+        byte[] bytes(Charset target) {
+            Encoded current = encoded;
+            if (current == null || current.charset != target) {
+                current = encoded = new Encoded(target, text.getBytes(target));
+            }
+            return current.bytes;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    // ---------------- Buffer ----------------
+
+    int mark() {
+        return length;
+    }
+
+    StatementRenderer append(Fragment fragment) {
+        byte[] bytes = fragment.bytes(charset);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, length, bytes.length);
+        length += bytes.length;
+        return this;
+    }
+
+    StatementRenderer append(String text) {
+        int n = text.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                return appendEncoded(text.substring(i));
+            }
+            buf[length++] = (byte) c;
+        }
+        return this;
+    }
+
+    private StatementRenderer appendEncoded(String text) {
+        byte[] bytes = text.getBytes(charset);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, length, bytes.length);
+        length += bytes.length;
+        return this;
+    }
+
+    StatementRenderer append(char c) {
+        if (c >= 0x80) {
+            return appendEncoded(String.valueOf(c));
+        }
+        ensure(1);
+        buf[length++] = (byte) c;
+        return this;
+    }
+
+    StatementRenderer append(long value) {
+        ensure(20);
+        if (value < 0) {
+            buf[length++] = '-';
+            if (value == Long.MIN_VALUE) {
+                return append("9223372036854775808");
+            }
+            value = -value;
+        }
+        int digits = digits(value);
+        for (int i = length + digits - 1; i >= length; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+        return this;
+    }
+
+    // Like println(text)
+    StatementRenderer line(String text) {
+        return append(text).append(NL);
+    }
+
+    StatementRenderer line(Fragment fragment) {
+        return append(fragment).append(NL);
+    }
+
+    // Same text as Money.format
+    StatementRenderer money(long paise) {
+        if (paise < 0) {
+            append('-');
+            paise = -paise;
+        }
+        append(paise / Money.PAISE_PER_RUPEE);
+        long fraction = paise % Money.PAISE_PER_RUPEE;
+        ensure(3);
+        buf[length++] = '.';
+        buf[length++] = (byte) ('0' + fraction / 10);
+        buf[length++] = (byte) ('0' + fraction % 10);
+        return this;
+    }
+
+    // String.format("%-<width>s", text)
+    StatementRenderer padRight(String text, int width) {
+        append(text);
+        return spaces(width - text.length());
+    }
+
+    // String.format("%-<width>d", value)
+    StatementRenderer padRight(long value, int width) {
+        int start = length;
+        append(value);
+        return spaces(width - (length - start));
+    }
+
+    // String.format("%-<width>s", Money.format(paise))
+    StatementRenderer padRightMoney(long paise, int width) {
+        int start = length;
+        money(paise);
+        return spaces(width - (length - start));
+    }
+
+    // String.format("%<width>.2f", Money.toRupees(paise))
+    StatementRenderer padLeftMoney(long paise, int width) {
+        int rupeeDigits = digits(Math.abs(paise / Money.PAISE_PER_RUPEE));
+        spaces(width - rupeeDigits - (paise < 0 ? 4 : 3)); // sign, point and two decimals
+        return money(paise);
+    }
+
+    private StatementRenderer spaces(int count) {
+        if (count > 0) {
+            ensure(count);
+            for (int i = 0; i < count; i++) {
+                buf[length++] = ' ';
+            }
+        }
+        return this;
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private void ensure(int bytes) {
+        if (length + bytes > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(length + bytes, buf.length * 2));
+        }
+    }
+
+    // Prints everything after 'mark' in one write and cuts the buffer back
+    void printFrom(int mark) {
+        System.out.write(buf, mark, length - mark);
+        cut(mark);
+    }
+
+    // Returns everything after 'mark' and cuts the buffer back
+    String takeFrom(int mark) {
+        String text = new String(buf, mark, length - mark, charset);
+        cut(mark);
+        return text;
+    }
+
+    private void cut(int mark) {
+        length = mark;
+        if (mark == 0 && buf.length > RETAINED_CAPACITY) {
+            buf = new byte[8192]; // a long passbook page should not pin its buffer
+        }
+    }
+
+    // ---------------- Transaction rows ----------------
+
+    // Same text as Transaction.format: "%-18s | %-15s | Rs. %10.2f | Balance: Rs. %10.2f | %s"
+    StatementRenderer transaction(TransactionStore transactions, int index) {
+        int start = length;
+        append("TXN").append(transactions.idAt(index));
+        spaces(18 - (length - start));
+        append(" | ");
+        start = length;
+        byte code = transactions.typeCodeAt(index);
+        append(TransactionTypes.name(code));
+        if (TransactionTypes.isTransfer(code)) {
+            append(AccountNumberAllocator.format(transactions.counterpartyAt(index)));
+        }
+        spaces(15 - (length - start));
+        return amounts(transactions.amountAt(index), transactions.balanceAfterAt(index), transactions.millisAt(index));
+    }
+
+    StatementRenderer transaction(String transactionId, String type, long amountPaise, long balanceAfterPaise,
+                                  long epochMillis) {
+        padRight(transactionId, 18).append(" | ").padRight(type, 15);
+        return amounts(amountPaise, balanceAfterPaise, epochMillis);
+    }
+
+    private StatementRenderer amounts(long amountPaise, long balanceAfterPaise, long epochMillis) {
+        append(" | Rs. ").padLeftMoney(amountPaise, 10);
+        append(" | Balance: Rs. ").padLeftMoney(balanceAfterPaise, 10);
+        append(" | ");
+        return timestamp(epochMillis);
+    }
+
+    // "dd-MM-yyyy HH:mm:ss" in local time, re-rendered only when the second changes
+    private StatementRenderer timestamp(long epochMillis) {
+        long second = Math.floorDiv(epochMillis, 1000);
+        if (second != cachedSecond) {
+            LocalTimeFields local = time.set(epochMillis);
+            twoDigits(0, local.day);
+            timestamp[2] = '-';
+            twoDigits(3, local.month);
+            timestamp[5] = '-';
+            twoDigits(6, local.year / 100);
+            twoDigits(8, local.year % 100);
+            timestamp[10] = ' ';
+            twoDigits(11, local.hour);
+            timestamp[13] = ':';
+            twoDigits(14, local.minute);
+            timestamp[16] = ':';
+            twoDigits(17, local.second);
+            cachedSecond = second;
+        }
+        ensure(timestamp.length);
+        System.arraycopy(timestamp, 0, buf, length, timestamp.length);
+        length += timestamp.length;
+        return this;
+    }
+
+    private void twoDigits(int at, int value) {
+        timestamp[at] = (byte) ('0' + value / 10);
+        timestamp[at + 1] = (byte) ('0' + value % 10);
+    }
+}
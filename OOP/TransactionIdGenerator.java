@@ -0,0 +1,86 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// ================== SNOWFLAKE-STYLE TRANSACTION ID GENERATOR ==================
+// 63-bit ids, positive and roughly time-ordered:
+//
+//   | 41 bits millis since 2024-01-01 | 6 bits node | 6 bits stripe | 10 bits sequence |
+//
+// Threads are spread over 64 stripes by thread id. Each stripe keeps its own
+// (millis, sequence) pair in one padded slot of an AtomicLongArray and advances
+// it with a single CAS, so there are no locks and two threads only ever contend
+// when they share a stripe. When a stripe issues more than 1024 ids in one
+// millisecond it borrows the next millisecond instead of spinning; the ids stay
+// unique and ordered and the stripe falls back in step with the clock once the
+// burst is over.
+final class TransactionIdGenerator {
+    static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+
+    private static final int SEQUENCE_BITS = 10;
+    private static final int STRIPE_BITS = 6;
+    private static final int NODE_BITS = 6;
+    private static final int STRIPE_SHIFT = SEQUENCE_BITS;
+    private static final int NODE_SHIFT = SEQUENCE_BITS + STRIPE_BITS;
+    private static final int TIME_SHIFT = SEQUENCE_BITS + STRIPE_BITS + NODE_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+
+    // 16 longs (128 bytes) between slots so stripes never share a cache line
+    private static final int PADDING = 16;
+
+    private static final long NODE_ID = readNodeId();
+    private static final AtomicLongArray STATE = new AtomicLongArray(STRIPES * PADDING);
+
+    // Lowest millis any stripe may use; raised when ids from a previous run are replayed
+    private static volatile long floorMillis;
+
+    private TransactionIdGenerator() {}
+
+    private static long readNodeId() {
+        long node = Long.getLong("bank.nodeId", 0);
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("bank.nodeId must be between 0 and " + MAX_NODE);
+        }
+        return node;
+    }
+
+    static long next() {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        int slot = stripe * PADDING;
+        while (true) {
+            long last = STATE.get(slot);
+            long now = Math.max(System.currentTimeMillis() - EPOCH_MILLIS, floorMillis);
+            long candidate = now << SEQUENCE_BITS;
+            // Same millisecond (or clock behind us): bump the sequence, which
+            // carries into the millis field when it overflows
+            long next = candidate > last ? candidate : last + 1;
+            if (STATE.compareAndSet(slot, last, next)) {
+                long millis = next >>> SEQUENCE_BITS;
+                return (millis << TIME_SHIFT)
+                     | (NODE_ID << NODE_SHIFT)
+                     | ((long) stripe << STRIPE_SHIFT)
+                     | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    // Makes sure ids issued from now on sort after an id seen in the journal
+    static void observe(long id) {
+        long millis = (id >>> TIME_SHIFT) + 1;
+        if (millis > floorMillis) {
+            synchronized (TransactionIdGenerator.class) {
+                if (millis > floorMillis) {
+                    floorMillis = millis;
+                }
+            }
+        }
+    }
+
+    static long timestampOf(long id) {
+        return (id >>> TIME_SHIFT) + EPOCH_MILLIS;
+    }
+
+    static String format(long id) {
+        return "TXN" + id;
+    }
+}
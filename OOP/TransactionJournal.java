@@ -0,0 +1,557 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32C;
+
+// ================== JOURNAL LISTENER (USED DURING REPLAY) ==================
+// 'offset' is the record's position in the journal file, as returned by the append methods
+interface JournalListener {
+    void onOpen(long offset, String accountNumber, String accountType, String holderName,
+                String phoneNumber, String email, LocalDate openDate) throws IOException;
+    void onTransaction(long offset, String accountNumber, Transaction transaction) throws IOException;
+    void onMark(long offset, String accountNumber, String marker) throws IOException;
+}
+
+// ================== APPEND-ONLY, MEMORY-MAPPED TRANSACTION JOURNAL ==================
+// Record layout inside the mapped file:
+//   int length | int crc | byte kind | long group | payload...
+// 'length' counts everything after itself and 'crc' is the CRC32C of kind, group
+// and payload. A length of 0 marks the end of the log, a length of -1 means
+// "continue at the next mapped region". Records never straddle two regions.
+// Replay, and the search for the end when the file is opened, stop at the first
+// record that does not check out: a write torn by a crash ends the log there.
+//
+// Groups make several records all-or-nothing (a transfer's debit and credit).
+// Between beginGroup() and endGroup() a thread's records carry the group's id -
+// derived from the offset of its first record, so never reused - and endGroup()
+// appends a COMMIT record with that id. Replay holds grouped records back until
+// their COMMIT and drops a group that has none. Other threads' records may sit
+// between a group's records; they are replayed as usual.
+//
+// Durability is configurable:
+//   ASYNC - append and return; a background thread forces the file every interval
+//   GROUP - append, then wait for the next group commit; everything appended while
+//           one fsync is in flight shares the following fsync
+//   SYNC  - force the file after every single record
+class TransactionJournal implements AutoCloseable {
+    enum Durability { ASYNC, GROUP, SYNC }
+
+    static final byte KIND_OPEN = 1;
+    static final byte KIND_TXN = 2;
+    static final byte KIND_MARK = 3;
+    static final byte KIND_COMMIT = 4;
+
+    private static final int HEADER_SIZE = 4 + 4 + 1 + 8; // length, crc, kind, group
+
+    private static final int REGION_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_RECORD_SIZE = 8 * 1024;
+    // Longest string a record field may hold, in UTF-8 bytes; an OPEN record with five
+    // of them (and a MARK with its prefix) stays within MAX_RECORD_SIZE
+    static final int MAX_FIELD_BYTES = 1024;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final FileChannel channel;
+    private final Durability durability;
+    private final long groupCommitMillis;
+    private final int groupCommitBatch;
+    // Record buffers are borrowed per append rather than held per thread, so a
+    // server with thousands of session threads does not pin 8 KB in each of them
+    private final ArrayBlockingQueue<ByteBuffer> spareBuffers =
+        new ArrayBlockingQueue<>(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+    private final CRC32C crc = new CRC32C(); // guarded by write()'s lock
+    private final ThreadLocal<Pending> pending = ThreadLocal.withInitial(Pending::new);
+
+    // One thread's open batch and group; both nest
+    private static final class Pending {
+        int batchDepth;
+        long batchLast = -1;  // offset of the last record appended inside the batch
+        int groupDepth;
+        long group;           // id of the open group, 0 until its first record is written
+    }
+
+    // Guarded by "this"
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long appendedSeq;
+    private long durableSeq;
+    private long durableEnd; // file offset up to which everything has been forced
+    private int waiters;
+    private boolean closed;
+
+    private final Thread flusher;
+
+    public TransactionJournal(File file, Durability durability, long groupCommitMillis, int groupCommitBatch)
+            throws IOException {
+        this.channel = new RandomAccessFile(file, "rw").getChannel();
+        this.durability = durability;
+        this.groupCommitMillis = Math.max(1, groupCommitMillis);
+        this.groupCommitBatch = Math.max(1, groupCommitBatch);
+
+        // Find the end of the existing log so new records are appended after it
+        this.regionStart = 0;
+        this.region = map(0);
+        CRC32C check = new CRC32C();
+        while (true) {
+            int length = region.remaining() >= 4 ? region.getInt(region.position()) : -1;
+            if (length == -1) {
+                regionStart += REGION_SIZE;
+                region = map(regionStart);
+                continue;
+            }
+            if (!valid(region, region.position(), length, check)) {
+                break; // the end, or a torn write that the next append overwrites
+            }
+            region.position(region.position() + 4 + length);
+        }
+        region.putInt(region.position(), 0);
+        this.durableEnd = regionStart + region.position();
+
+        this.flusher = new Thread(this::flushLoop, "journal-group-commit");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // Configuration from system properties: bank.durability, bank.groupCommitMillis, bank.groupCommitBatch
+    public static TransactionJournal fromSystemProperties(File file) throws IOException {
+        Durability durability = Durability.valueOf(
+            System.getProperty("bank.durability", "GROUP").toUpperCase());
+        long millis = Long.getLong("bank.groupCommitMillis", 5);
+        int batch = Integer.getInteger("bank.groupCommitBatch", 256);
+        return new TransactionJournal(file, durability, millis, batch);
+    }
+
+    private MappedByteBuffer map(long start) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, start, REGION_SIZE);
+    }
+
+    public Durability getDurability() { return durability; }
+
+    // ---------------- Appending ----------------
+
+    // Append methods return the record's offset in the file
+    // 'epochMillis' on OPEN and MARK records is when they took effect, for replay up to a time
+    public long appendOpen(Account account, long epochMillis) {
+        ByteBuffer buf = begin(KIND_OPEN);
+        putString(buf, account.getAccountNumber());
+        putString(buf, account.getAccountType());
+        putString(buf, account.getAccountHolderName());
+        putString(buf, account.getPhoneNumber());
+        putString(buf, account.getEmail());
+        buf.putLong(account.getAccountOpenDate().toEpochDay());
+        buf.putLong(epochMillis);
+        return commit(buf);
+    }
+
+    // Amounts are in paise
+    public long appendTransaction(String accountNumber, long transactionId, String type,
+                                  long amount, long balanceAfter, long epochMillis) {
+        ByteBuffer buf = begin(KIND_TXN);
+        putString(buf, accountNumber);
+        buf.putLong(transactionId);
+        putString(buf, type);
+        buf.putLong(amount);
+        buf.putLong(balanceAfter);
+        buf.putLong(epochMillis);
+        return commit(buf);
+    }
+
+    public long appendMark(String accountNumber, String marker, long epochMillis) {
+        ByteBuffer buf = begin(KIND_MARK);
+        putString(buf, accountNumber);
+        putString(buf, marker);
+        buf.putLong(epochMillis);
+        return commit(buf);
+    }
+
+    private ByteBuffer begin(byte kind) {
+        ByteBuffer buf = spareBuffers.poll();
+        if (buf == null) {
+            buf = ByteBuffer.allocate(MAX_RECORD_SIZE);
+        }
+        buf.clear();
+        buf.putInt(0); // length placeholder
+        buf.putInt(0); // crc placeholder
+        buf.put(kind);
+        buf.putLong(0); // group, filled in by write()
+        return buf;
+    }
+
+    private long commit(ByteBuffer buf) {
+        buf.putInt(0, buf.position() - 4);
+        buf.flip();
+        Pending open = pending.get();
+        long offset;
+        try {
+            offset = write(buf, open);
+        } finally {
+            spareBuffers.offer(buf); // dropped when enough are spare
+        }
+
+        if (open.batchDepth > 0 || open.groupDepth > 0) {
+            open.batchLast = offset; // waited for by endBatch() or sync()
+        } else if (durability == Durability.GROUP) {
+            awaitDurable(offset);
+        }
+        return offset;
+    }
+
+    // ---------------- Batches and groups ----------------
+
+    // Appends made by this thread until endBatch() skip the per-record group-commit
+    // wait; endBatch() then waits once for all of them. Used by bulk jobs such as
+    // month-end, which would otherwise wait for an fsync on every record.
+    public void beginBatch() {
+        pending.get().batchDepth++;
+    }
+
+    public void endBatch() {
+        Pending open = pending.get();
+        if (--open.batchDepth == 0 && open.groupDepth == 0) {
+            long offset = open.batchLast;
+            open.batchLast = -1;
+            if (offset >= 0 && durability == Durability.GROUP) {
+                awaitDurable(offset);
+            }
+        }
+    }
+
+    // Records this thread appends until endGroup() replay all together or not at all.
+    // Nothing waits for durability inside a group; call sync() with endGroup()'s
+    // result once the account monitors are released.
+    public void beginGroup() {
+        pending.get().groupDepth++;
+    }
+
+    // Closes the group with a COMMIT record; returns its offset, or -1 if the group
+    // wrote nothing (or is nested in another one)
+    public long endGroup() {
+        Pending open = pending.get();
+        if (open.groupDepth > 1 || open.group == 0) {
+            open.groupDepth--;
+            return -1;
+        }
+        long offset = commit(begin(KIND_COMMIT)); // still inside the group: tagged, and no wait
+        open.groupDepth = 0;
+        open.group = 0;
+        if (open.batchDepth == 0) {
+            open.batchLast = -1; // left to the caller's sync()
+        }
+        return offset;
+    }
+
+    // Waits until everything up to 'offset' is durable, as GROUP mode promises. Within
+    // a batch it returns at once; endBatch() waits for everything.
+    public void sync(long offset) {
+        Pending open = pending.get();
+        if (offset < 0 || open.batchDepth > 0 || open.groupDepth > 0) {
+            return;
+        }
+        if (durability == Durability.GROUP) {
+            awaitDurable(offset);
+        }
+    }
+
+    // Offset the next record will be written at
+    public synchronized long position() {
+        return regionStart + region.position();
+    }
+
+    private synchronized long write(ByteBuffer record, Pending open) {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        // Leave room for the record plus the 4-byte end marker that follows it
+        if (region.remaining() < record.remaining() + 4) {
+            region.putInt(-1);
+            try {
+                region.force();
+                regionStart += REGION_SIZE;
+                region = map(regionStart);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to extend journal", e);
+            }
+        }
+        long offset = regionStart + region.position();
+        if (open.groupDepth > 0) {
+            if (open.group == 0) {
+                open.group = offset + 1; // named after its first record; 0 means no group
+            }
+            record.putLong(9, open.group);
+        }
+        crc.reset();
+        crc.update(record.array(), 8, record.limit() - 8);
+        record.putInt(4, (int) crc.getValue());
+        region.put(record);
+        region.putInt(region.position(), 0); // end of log until the next record
+        appendedSeq++;
+
+        if (durability == Durability.SYNC) {
+            region.force();
+            durableSeq = appendedSeq;
+            durableEnd = regionStart + region.position();
+        } else if (appendedSeq - durableSeq >= groupCommitBatch) {
+            notifyAll(); // wake the flusher early, the batch is full
+        }
+        return offset;
+    }
+
+    // ---------------- Group commit ----------------
+
+    private synchronized void awaitDurable(long offset) {
+        boolean interrupted = false;
+        waiters++;
+        notifyAll(); // a writer is blocked, so the flusher should not sit out its interval
+        while (durableEnd <= offset && !closed) {
+            try {
+                wait(groupCommitMillis);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        waiters--;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            MappedByteBuffer toForce;
+            long target;
+            long targetEnd;
+            synchronized (this) {
+                if (closed) return;
+                // Let a batch build up for one interval unless it is full or a writer is waiting
+                long pending = appendedSeq - durableSeq;
+                if (pending == 0 || (pending < groupCommitBatch && waiters == 0)) {
+                    try {
+                        wait(groupCommitMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (appendedSeq == durableSeq) continue;
+                toForce = region;
+                target = appendedSeq;
+                targetEnd = regionStart + region.position();
+            }
+
+            // The fsync runs outside the lock so appends continue while it is in flight
+            toForce.force();
+
+            synchronized (this) {
+                if (target > durableSeq) {
+                    durableSeq = target;
+                    durableEnd = targetEnd;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    public synchronized void flush() {
+        region.force();
+        durableSeq = appendedSeq;
+        durableEnd = regionStart + region.position();
+        notifyAll();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            region.force();
+            durableSeq = appendedSeq;
+            durableEnd = regionStart + region.position();
+            closed = true;
+            notifyAll();
+        }
+        flusher.interrupt();
+        channel.close();
+    }
+
+    // ---------------- Replay ----------------
+
+    // Reads every record from the start of the file. Must be called before new
+    // records are appended (i.e. right after opening the journal).
+    public long replay(JournalListener listener) throws IOException {
+        return replay(listener, 0, Long.MAX_VALUE);
+    }
+
+    // A decoded record whose listener call waits for its group's COMMIT
+    private interface Replayed {
+        void apply() throws IOException;
+    }
+
+    // Reads the records from 'fromOffset' (the start of a record, e.g. a snapshot's
+    // journal position), skipping records later than 'untilMillis'. That is checked
+    // record by record: appends from different threads are not in time order.
+    // Returns the number of records applied.
+    public synchronized long replay(JournalListener listener, long fromOffset, long untilMillis)
+            throws IOException {
+        long records = 0;
+        long start = fromOffset - fromOffset % REGION_SIZE;
+        MappedByteBuffer view = map(start);
+        view.position((int) (fromOffset - start));
+        CRC32C check = new CRC32C();
+        Map<Long, List<Replayed>> groups = new HashMap<>();
+
+        while (true) {
+            int length = view.remaining() >= 4 ? view.getInt(view.position()) : -1;
+            if (length == -1) {
+                start += REGION_SIZE;
+                view = map(start);
+                continue;
+            }
+            if (!valid(view, view.position(), length, check)) {
+                break; // the end of the log, or a torn record and everything after it
+            }
+
+            long offset = start + view.position();
+            int end = view.position() + 4 + length;
+            view.position(view.position() + 8);
+            byte kind = view.get();
+            long group = view.getLong();
+            if (kind == KIND_COMMIT) {
+                List<Replayed> committed = groups.remove(group);
+                if (committed != null) {
+                    for (Replayed record : committed) {
+                        record.apply();
+                        records++;
+                    }
+                }
+                view.position(end);
+                continue;
+            }
+
+            String accountNumber = getString(view);
+            Replayed record;
+            long millis;
+            switch (kind) {
+                case KIND_OPEN: {
+                    String accountType = getString(view);
+                    String holderName = getString(view);
+                    String phoneNumber = getString(view);
+                    String email = getString(view);
+                    LocalDate openDate = LocalDate.ofEpochDay(view.getLong());
+                    millis = view.getLong();
+                    record = () -> listener.onOpen(offset, accountNumber, accountType, holderName,
+                                                   phoneNumber, email, openDate);
+                    break;
+                }
+                case KIND_TXN: {
+                    long id = view.getLong();
+                    String type = getString(view);
+                    double amount = Money.toRupees(view.getLong());
+                    double balanceAfter = Money.toRupees(view.getLong());
+                    millis = view.getLong();
+                    LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZONE);
+                    Transaction transaction = new Transaction(id, type, amount, balanceAfter, timestamp);
+                    record = () -> listener.onTransaction(offset, accountNumber, transaction);
+                    break;
+                }
+                case KIND_MARK: {
+                    String marker = getString(view);
+                    millis = view.getLong();
+                    record = () -> listener.onMark(offset, accountNumber, marker);
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown journal record kind " + kind + " at offset " + offset);
+            }
+            if (millis <= untilMillis) {
+                if (group != 0) {
+                    groups.computeIfAbsent(group, g -> new ArrayList<>()).add(record);
+                } else {
+                    record.apply();
+                    records++;
+                }
+            }
+            view.position(end);
+        }
+        return records; // groups still open here never committed and are dropped
+    }
+
+    // Whether a whole record with a matching CRC starts at 'position'
+    private static boolean valid(ByteBuffer view, int position, int length, CRC32C check) {
+        if (length < HEADER_SIZE - 4 || length > MAX_RECORD_SIZE || position + 4 + length > view.limit() - 4) {
+            return false;
+        }
+        ByteBuffer body = view.duplicate();
+        body.limit(position + 4 + length).position(position + 8);
+        check.reset();
+        check.update(body);
+        return (int) check.getValue() == view.getInt(position + 4);
+    }
+
+    // ---------------- Encoding helpers ----------------
+
+    // Rejects a value too long for a record field; callers check before changing any state
+    static void checkField(String what, String value) {
+        if (value != null && utf8Length(value) > MAX_FIELD_BYTES) {
+            throw new IllegalArgumentException(what + " must be at most " + MAX_FIELD_BYTES + " bytes");
+        }
+    }
+
+    private static int utf8Length(String value) {
+        int bytes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                       && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    // Nothing has reached the file yet when this throws: the record is built in 'buf'
+    private static void putString(ByteBuffer buf, String value) {
+        // ASCII (account numbers, transaction types) is copied without allocating
+        int length = value.length();
+        boolean ascii = true;
+        for (int i = 0; i < length && ascii; i++) {
+            ascii = value.charAt(i) < 0x80;
+        }
+        byte[] bytes = ascii ? null : value.getBytes(StandardCharsets.UTF_8);
+        int size = ascii ? length : bytes.length;
+        if (size + 2 > buf.remaining() - Long.BYTES * 3) {
+            throw new IllegalArgumentException("Journal record field too long (" + size + " bytes)");
+        }
+        buf.putShort((short) size);
+        if (ascii) {
+            for (int i = 0; i < length; i++) {
+                buf.put((byte) value.charAt(i));
+            }
+        } else {
+            buf.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int length = buf.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,504 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// ================== INTERNED TRANSACTION TYPE TABLE ==================
+// Transaction types are stored as one byte. Transfer types carry the other
+// account's number, so only their prefix is interned and the number itself is
+// kept in a separate counterparty column.
+final class TransactionTypes {
+    static final String TRANSFER_OUT_PREFIX = "TRANSFER_OUT_TO_";
+    static final String TRANSFER_IN_PREFIX = "TRANSFER_IN_FROM_";
+
+    static final byte OPENING_DEPOSIT = 0;
+    static final byte DEPOSIT = 1;
+    static final byte WITHDRAWAL = 2;
+    static final byte TRANSFER_OUT = 3;
+    static final byte TRANSFER_IN = 4;
+    static final byte INTEREST_CREDIT = 5;
+    static final byte TRANSACTION_CHARGES = 6;
+    static final byte MONTHLY_MAINTENANCE = 7;
+    static final byte OVERDRAFT_USED = 8;
+    static final byte OVERDRAFT_REPAY = 9;
+
+    static final int MAX_NAME_BYTES = 255;      // the history archive stores the length in one byte
+
+    private static final String[] NAMES = new String[128];
+    private static final Map<String, Byte> CODES = new HashMap<>();
+    private static int nextCode;
+
+    static {
+        intern("OPENING_DEPOSIT");
+        intern("DEPOSIT");
+        intern("WITHDRAWAL");
+        intern(TRANSFER_OUT_PREFIX);
+        intern(TRANSFER_IN_PREFIX);
+        intern("INTEREST_CREDIT");
+        intern("TRANSACTION_CHARGES");
+        intern("MONTHLY_MAINTENANCE");
+        intern("OVERDRAFT_USED");
+        intern("OVERDRAFT_REPAY");
+    }
+
+    private TransactionTypes() {}
+
+    static synchronized byte intern(String name) {
+        Byte code = CODES.get(name);
+        if (code != null) {
+            return code;
+        }
+        if (nextCode == NAMES.length) {
+            throw new IllegalStateException("Too many transaction types: " + name);
+        }
+        if (name.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Transaction type longer than " + MAX_NAME_BYTES + " bytes: " + name);
+        }
+        byte newCode = (byte) nextCode++;
+        NAMES[newCode] = name;
+        CODES.put(name, newCode);
+        return newCode;
+    }
+
+    // Every interned name, indexed by code
+    static synchronized String[] names() {
+        return Arrays.copyOf(NAMES, nextCode);
+    }
+
+    static String name(byte code) {
+        return NAMES[code];
+    }
+
+    static boolean isTransfer(byte code) {
+        return code == TRANSFER_OUT || code == TRANSFER_IN;
+    }
+
+}
+
+// ================== COLUMNAR TRANSACTION STORE ==================
+// Struct-of-arrays history for one account: every column is a primitive array,
+// split into fixed-size chunks so growth never copies old entries. The first
+// chunk starts small and grows up to CHUNK_SIZE, which keeps young accounts cheap.
+// Timestamps never go backwards, so the epoch column doubles as a time index and
+// range queries are two binary searches.
+//
+// With a HistoryArchive attached the store is tiered: only the newest entries
+// (between one and two hot windows) stay in the columns, and older ones are spilled
+// to the archive a window at a time. Indexes stay the same either way - entries
+// below 'archived' are read back from disk one block at a time, through a small
+// cache that releaseCold() drops again.
+// Not thread-safe on its own; the owning Account guards it with its monitor.
+class TransactionStore {
+    static final int CHUNK_SHIFT = 12;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 8;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private long[][] ids = new long[1][];
+    private long[][] epochMillis = new long[1][];
+    private long[][] amounts = new long[1][];
+    private long[][] balancesAfter = new long[1][];
+    private byte[][] typeCodes = new byte[1][];
+    private int[][] counterparties = new int[1][];
+    private int size;                  // all entries, archived ones included
+    private long lastMillis = Long.MIN_VALUE;
+
+    // Tiered history: entries [0, archived) are in the archive, newest block at archiveHead
+    private HistoryArchive archive;
+    private int archived;
+    private long archiveHead = HistoryArchive.NO_BLOCK;
+    // Located cold blocks, oldest first, and the one last decoded (null when released)
+    private long[] coldOffsets;
+    private int[] coldFirstIndexes;
+    private HistoryArchive.Block coldBlock;
+
+    public TransactionStore() {
+        allocateChunk(0, INITIAL_CAPACITY);
+    }
+
+    public int size() { return size; }
+
+    // Amounts are in minor units (paise)
+    public void append(long id, long millis, String type, long amount, long balanceAfter) {
+        byte code;
+        int counterparty = 0;
+        if (type.startsWith(TransactionTypes.TRANSFER_OUT_PREFIX)
+                && (counterparty = AccountNumberAllocator.parse(
+                        type, TransactionTypes.TRANSFER_OUT_PREFIX.length())) >= 0) {
+            code = TransactionTypes.TRANSFER_OUT;
+        } else if (type.startsWith(TransactionTypes.TRANSFER_IN_PREFIX)
+                && (counterparty = AccountNumberAllocator.parse(
+                        type, TransactionTypes.TRANSFER_IN_PREFIX.length())) >= 0) {
+            code = TransactionTypes.TRANSFER_IN;
+        } else {
+            counterparty = 0;
+            code = TransactionTypes.intern(type);
+        }
+        append(id, millis, code, counterparty, amount, balanceAfter);
+    }
+
+    public void append(long id, long millis, byte typeCode, int counterparty, long amount, long balanceAfter) {
+        // A wall clock stepping backwards must not break the sorted time index
+        millis = Math.max(millis, lastMillis);
+        lastMillis = millis;
+
+        int hot = size - archived;
+        int chunk = hot >>> CHUNK_SHIFT;
+        int offset = hot & CHUNK_MASK;
+        ensureCapacity(chunk, offset);
+
+        ids[chunk][offset] = id;
+        epochMillis[chunk][offset] = millis;
+        amounts[chunk][offset] = amount;
+        balancesAfter[chunk][offset] = balanceAfter;
+        typeCodes[chunk][offset] = typeCode;
+        counterparties[chunk][offset] = counterparty;
+        size++;
+
+        if (archive != null && size - archived >= 2 * archive.hotSize() && !archive.isReadOnly()) {
+            spill(archive.hotSize());
+        }
+    }
+
+    // ---------------- Tiering ----------------
+
+    // Spills to 'archive' from now on; a history already over two hot windows is spilled at once
+    void attachArchive(HistoryArchive archive) {
+        this.archive = archive;
+        if (archive != null && !archive.isReadOnly() && size - archived >= 2 * archive.hotSize()) {
+            spill(archive.hotSize());
+        }
+    }
+
+    // Writes the oldest hot entries to the archive in blocks of one hot window,
+    // keeping between 'keep' and 2 x 'keep' in memory
+    private void spill(int keep) {
+        int hot = size - archived;
+        int spilled = 0;
+        while (hot - spilled >= 2 * keep) {
+            int chunk = spilled >>> CHUNK_SHIFT;
+            int from = spilled & CHUNK_MASK;
+            int count = Math.min(keep, CHUNK_SIZE - from); // blocks never span chunks
+            archiveHead = archive.write(archiveHead, archived + spilled, ids[chunk], epochMillis[chunk],
+                                        amounts[chunk], balancesAfter[chunk], typeCodes[chunk],
+                                        counterparties[chunk], from, count);
+            spilled += count;
+        }
+        compact(spilled);
+        archived += spilled;
+        releaseCold();
+    }
+
+    // Moves the hot entries after the first 'dropped' to the front and frees unused chunks
+    private void compact(int dropped) {
+        int remaining = size - archived - dropped;
+        if (dropped + remaining <= ids[0].length) {
+            // The usual case: everything is in the first chunk
+            System.arraycopy(ids[0], dropped, ids[0], 0, remaining);
+            System.arraycopy(epochMillis[0], dropped, epochMillis[0], 0, remaining);
+            System.arraycopy(amounts[0], dropped, amounts[0], 0, remaining);
+            System.arraycopy(balancesAfter[0], dropped, balancesAfter[0], 0, remaining);
+            System.arraycopy(typeCodes[0], dropped, typeCodes[0], 0, remaining);
+            System.arraycopy(counterparties[0], dropped, counterparties[0], 0, remaining);
+            return;
+        }
+        for (int i = 0; i < remaining; i++) {
+            int from = dropped + i;
+            int fc = from >>> CHUNK_SHIFT, fo = from & CHUNK_MASK;
+            int tc = i >>> CHUNK_SHIFT, to = i & CHUNK_MASK;
+            ids[tc][to] = ids[fc][fo];
+            epochMillis[tc][to] = epochMillis[fc][fo];
+            amounts[tc][to] = amounts[fc][fo];
+            balancesAfter[tc][to] = balancesAfter[fc][fo];
+            typeCodes[tc][to] = typeCodes[fc][fo];
+            counterparties[tc][to] = counterparties[fc][fo];
+        }
+        for (int chunk = Math.max(1, (remaining + CHUNK_SIZE - 1) >>> CHUNK_SHIFT); chunk < ids.length; chunk++) {
+            ids[chunk] = null;
+            epochMillis[chunk] = null;
+            amounts[chunk] = null;
+            balancesAfter[chunk] = null;
+            typeCodes[chunk] = null;
+            counterparties[chunk] = null;
+        }
+    }
+
+    int archivedCount() {
+        return archived;
+    }
+
+    // Drops the cold blocks read since the last call; history readers call it when done
+    void releaseCold() {
+        coldOffsets = null;
+        coldFirstIndexes = null;
+        coldBlock = null;
+    }
+
+    // The decoded archive block holding entry 'index' (< archived)
+    private HistoryArchive.Block cold(int index) {
+        HistoryArchive.Block block = coldBlock;
+        if (block != null && index >= block.firstIndex && index < block.firstIndex + block.count) {
+            return block;
+        }
+        if (archive == null) {
+            throw new IllegalStateException("Transaction " + index + " is archived but no history archive is open");
+        }
+        if (coldOffsets == null) {
+            locateColdBlocks();
+        }
+        int low = 0;
+        int high = coldFirstIndexes.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (coldFirstIndexes[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        coldBlock = archive.read(coldOffsets[low]);
+        return coldBlock;
+    }
+
+    // Walks the block chain once (headers only) so blocks can be found by index
+    private void locateColdBlocks() {
+        int blocks = 0;
+        long[] offsets = new long[16];
+        int[] firstIndexes = new int[16];
+        for (long offset = archiveHead; offset != HistoryArchive.NO_BLOCK; ) {
+            HistoryArchive.Block header = archive.readHeader(offset);
+            if (blocks == offsets.length) {
+                offsets = Arrays.copyOf(offsets, blocks * 2);
+                firstIndexes = Arrays.copyOf(firstIndexes, blocks * 2);
+            }
+            offsets[blocks] = offset;
+            firstIndexes[blocks] = header.firstIndex;
+            blocks++;
+            offset = header.previous;
+        }
+        // Newest first on disk; oldest first here
+        coldOffsets = new long[blocks];
+        coldFirstIndexes = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            coldOffsets[i] = offsets[blocks - 1 - i];
+            coldFirstIndexes[i] = firstIndexes[blocks - 1 - i];
+        }
+    }
+
+    private void ensureCapacity(int chunk, int offset) {
+        if (chunk == ids.length) {
+            int chunks = ids.length * 2;
+            ids = Arrays.copyOf(ids, chunks);
+            epochMillis = Arrays.copyOf(epochMillis, chunks);
+            amounts = Arrays.copyOf(amounts, chunks);
+            balancesAfter = Arrays.copyOf(balancesAfter, chunks);
+            typeCodes = Arrays.copyOf(typeCodes, chunks);
+            counterparties = Arrays.copyOf(counterparties, chunks);
+        }
+        if (ids[chunk] == null) {
+            allocateChunk(chunk, CHUNK_SIZE);
+        } else if (offset == ids[chunk].length) {
+            // Only the first chunk is ever smaller than CHUNK_SIZE
+            allocateChunk(chunk, Math.min(CHUNK_SIZE, offset * 2));
+        }
+    }
+
+    private void allocateChunk(int chunk, int capacity) {
+        ids[chunk] = grow(ids[chunk], capacity);
+        epochMillis[chunk] = grow(epochMillis[chunk], capacity);
+        amounts[chunk] = grow(amounts[chunk], capacity);
+        balancesAfter[chunk] = grow(balancesAfter[chunk], capacity);
+        typeCodes[chunk] = typeCodes[chunk] == null
+            ? new byte[capacity] : Arrays.copyOf(typeCodes[chunk], capacity);
+        counterparties[chunk] = counterparties[chunk] == null
+            ? new int[capacity] : Arrays.copyOf(counterparties[chunk], capacity);
+    }
+
+    private static long[] grow(long[] column, int capacity) {
+        return column == null ? new long[capacity] : Arrays.copyOf(column, capacity);
+    }
+
+    // ---------------- Column access ----------------
+
+    // Indexes below 'archived' are served from the cold block cache
+    public long idAt(int index) {
+        if (index < archived) return cold(index).ids[index - coldBlock.firstIndex];
+        index -= archived;
+        return ids[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    public long millisAt(int index) {
+        if (index < archived) return cold(index).millis[index - coldBlock.firstIndex];
+        index -= archived;
+        return epochMillis[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    public long amountAt(int index) {
+        if (index < archived) return cold(index).amounts[index - coldBlock.firstIndex];
+        index -= archived;
+        return amounts[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    public long balanceAfterAt(int index) {
+        if (index < archived) return cold(index).balances[index - coldBlock.firstIndex];
+        index -= archived;
+        return balancesAfter[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    public byte typeCodeAt(int index) {
+        if (index < archived) return cold(index).codes[index - coldBlock.firstIndex];
+        index -= archived;
+        return typeCodes[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    public int counterpartyAt(int index) {
+        if (index < archived) return cold(index).counterparties[index - coldBlock.firstIndex];
+        index -= archived;
+        return counterparties[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    public String typeAt(int index) {
+        byte code = typeCodeAt(index);
+        String name = TransactionTypes.name(code);
+        return TransactionTypes.isTransfer(code)
+            ? name + AccountNumberAllocator.format(counterpartyAt(index))
+            : name;
+    }
+
+    // ---------------- Time index ----------------
+
+    // Index of the first transaction at or after the given time
+    public int lowerBound(long millis) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (millisAt(mid) < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Index just past the last transaction at or before the given time
+    public int upperBound(long millis) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (millisAt(mid) <= millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    // ---------------- Snapshot ----------------
+
+    // Column by column, chunk by chunk, as bulk primitive runs; archived entries
+    // are represented by their count and the newest block's offset
+    void writeSnapshot(BankSnapshot.Out out) throws IOException {
+        int hot = size - archived;
+        out.putInt(hot);
+        out.putInt(archived);
+        out.putLong(archiveHead);
+        for (int chunk = 0, from = 0; from < hot; chunk++, from += CHUNK_SIZE) {
+            int rows = Math.min(CHUNK_SIZE, hot - from);
+            out.putLongs(ids[chunk], 0, rows);
+            out.putLongs(epochMillis[chunk], 0, rows);
+            out.putLongs(amounts[chunk], 0, rows);
+            out.putLongs(balancesAfter[chunk], 0, rows);
+            out.putBytes(typeCodes[chunk], 0, rows);
+            out.putInts(counterparties[chunk], 0, rows);
+        }
+    }
+
+    // 'typeCodes' maps the codes stored in the snapshot to this process's codes
+    void readSnapshot(BankSnapshot.In in, byte[] typeCodes) throws IOException {
+        int rows = in.getInt();
+        if (in.version >= 2) {
+            archived = in.getInt();
+            archiveHead = in.getLong();
+        }
+        int chunks = Math.max(1, (rows + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        ids = new long[chunks][];
+        epochMillis = new long[chunks][];
+        amounts = new long[chunks][];
+        balancesAfter = new long[chunks][];
+        this.typeCodes = new byte[chunks][];
+        counterparties = new int[chunks][];
+        allocateChunk(0, Math.max(INITIAL_CAPACITY, Math.min(CHUNK_SIZE, rows)));
+        for (int chunk = 0, from = 0; from < rows; chunk++, from += CHUNK_SIZE) {
+            int count = Math.min(CHUNK_SIZE, rows - from);
+            if (ids[chunk] == null) {
+                allocateChunk(chunk, CHUNK_SIZE);
+            }
+            in.getLongs(ids[chunk], 0, count);
+            in.getLongs(epochMillis[chunk], 0, count);
+            in.getLongs(amounts[chunk], 0, count);
+            in.getLongs(balancesAfter[chunk], 0, count);
+            in.getBytes(this.typeCodes[chunk], 0, count);
+            in.getInts(counterparties[chunk], 0, count);
+            byte[] codes = this.typeCodes[chunk];
+            for (int i = 0; i < count; i++) {
+                codes[i] = typeCodes[codes[i]];
+            }
+        }
+        size = archived + rows;
+        lastMillis = rows > 0 ? millisAt(size - 1) : Long.MIN_VALUE;
+    }
+
+    // ================== FLYWEIGHT CURSOR ==================
+    // One reusable view over the columns; move it with at(index) instead of
+    // materialising a Transaction per row.
+    class Cursor {
+        private int index = -1;
+
+        public Cursor at(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Transaction " + index + " of " + size);
+            }
+            this.index = index;
+            return this;
+        }
+
+        public int index() { return index; }
+        public long getId() { return idAt(index); }
+        public String getTransactionId() { return TransactionIdGenerator.format(idAt(index)); }
+        public String getType() { return typeAt(index); }
+        public byte getTypeCode() { return typeCodeAt(index); }
+        public int getCounterparty() { return counterpartyAt(index); }
+        public long getEpochMillis() { return millisAt(index); }
+        public long getAmountMinor() { return amountAt(index); }
+        public long getBalanceAfterMinor() { return balanceAfterAt(index); }
+        public double getAmount() { return amountAt(index) / 100.0; }
+        public double getBalanceAfter() { return balanceAfterAt(index) / 100.0; }
+
+        public LocalDateTime getTimestamp() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(millisAt(index)), ZONE);
+        }
+
+        public Transaction toTransaction() {
+            return new Transaction(getId(), getType(), getAmount(), getBalanceAfter(), getTimestamp());
+        }
+
+        @Override
+        public String toString() {
+            return Transaction.format(getTransactionId(), getType(), getAmount(), getBalanceAfter(),
+                                      getTimestamp());
+        }
+    }
+}
@@ -0,0 +1,305 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// ================== BATCHED TRANSFERS WITH NETTING ==================
+// A payroll or bulk-payout run as one unit. Rows are only collected by add();
+// Bank.applyBatch then, instead of one transferMoney per row:
+//
+//   1. resolves each account once and rejects rows that can never succeed
+//      (unknown or inactive account, same account on both sides, amount <= 0);
+//   2. adds up every account's debits and credits into a net position;
+//   3. with the paying accounts locked (account-number order), checks each one
+//      once - net outflow against the daily limit, balance + net against
+//      MIN_BALANCE. A payer that fails has all its rows rejected, which can
+//      take credits away from other payers, so the check repeats until no
+//      payer fails;
+//   4. posts each account in one pass: a TRANSFER_OUT_TO_ / TRANSFER_IN_FROM_
+//      detail record per row (balance unchanged), then one BATCH_DEBIT or
+//      BATCH_CREDIT entry that moves the balance by the net amount.
+//
+// Payers are posted while locked; accounts that only receive are posted after,
+// one at a time, so between the two the money is in flight (as with a clearing
+// account). Credits are posted even if the account was closed after step 1.
+// More than MAX_LOCKED_PAYERS payers are handled as consecutive sub-batches,
+// netted separately. Nothing is printed per row; the Result lists rejections.
+// The whole run is one journal group: replay applies every debit and credit of
+// the batch or none of them. Records are not waited for one by one while payers
+// are locked, only once at the end, with every monitor released.
+final class TransferBatch {
+    static final String BATCH_DEBIT = "BATCH_DEBIT";
+    static final String BATCH_CREDIT = "BATCH_CREDIT";
+    static final int MAX_LOCKED_PAYERS = 256;
+
+    private String[] from = new String[1024];
+    private String[] to = new String[1024];
+    private long[] amounts = new long[1024];
+    private int size;
+
+    public void add(String fromAccount, String toAccount, double amount) throws InvalidAmountException {
+        addPaise(fromAccount, toAccount, Money.ofRupees(amount));
+    }
+
+    public void addPaise(String fromAccount, String toAccount, long amount) {
+        if (size == amounts.length) {
+            from = Arrays.copyOf(from, size * 2);
+            to = Arrays.copyOf(to, size * 2);
+            amounts = Arrays.copyOf(amounts, size * 2);
+        }
+        from[size] = fromAccount;
+        to[size] = toAccount;
+        amounts[size] = amount;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // ================== RESULT ==================
+    static final class Result {
+        final int applied;
+        final long movedPaise;
+        final int accountsPosted;
+        final List<Rejection> rejections;
+
+        Result(int applied, long movedPaise, int accountsPosted, List<Rejection> rejections) {
+            this.applied = applied;
+            this.movedPaise = movedPaise;
+            this.accountsPosted = accountsPosted;
+            this.rejections = rejections;
+        }
+
+        @Override
+        public String toString() {
+            return "✓ Batch applied: " + applied + " transfer(s), Rs. " + Money.format(movedPaise) + " across "
+                + accountsPosted + " account(s); " + rejections.size() + " rejected";
+        }
+    }
+
+    static final class Rejection {
+        final int row;       // position in the batch, from 0
+        final String reason;
+
+        Rejection(int row, String reason) {
+            this.row = row;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return "Row " + row + ": " + reason;
+        }
+    }
+
+    // ---------------- Net positions ----------------
+
+    // One account's share of the batch
+    static final class Position {
+        final Account account;
+        int[] rows = new int[4];  // rows touching the account, in batch order
+        int rowCount;
+        String failure;           // set when the account cannot pay its rows
+
+        Position(Account account) {
+            this.account = account;
+        }
+
+        void add(int row) {
+            if (rowCount == rows.length) {
+                rows = Arrays.copyOf(rows, rowCount * 2);
+            }
+            rows[rowCount++] = row;
+        }
+    }
+
+    // ---------------- Applying ----------------
+
+    // Called by Bank.applyBatch with its account lookup and journal (null if none)
+    Result applyTo(Function<String, Account> lookup, TransactionJournal journal) {
+        if (journal == null) {
+            return apply(lookup);
+        }
+        long commit = -1;
+        Result result;
+        journal.beginGroup();
+        try {
+            result = apply(lookup);
+        } finally {
+            commit = journal.endGroup();
+        }
+        journal.sync(commit);
+        return result;
+    }
+
+    private Result apply(Function<String, Account> lookup) {
+        Account[] sources = new Account[size];
+        Account[] targets = new Account[size];
+        String[] rejected = new String[size];
+        Map<Account, Boolean> payerSet = new IdentityHashMap<>();
+        for (int row = 0; row < size; row++) {
+            rejected[row] = resolve(row, lookup, sources, targets);
+            if (rejected[row] == null) {
+                payerSet.put(sources[row], Boolean.TRUE);
+            }
+        }
+        Account[] payers = payerSet.keySet().toArray(new Account[0]);
+        Arrays.sort(payers, Comparator.comparing(Account::getAccountNumber)); // the transfer lock order
+
+        int applied = 0;
+        long moved = 0;
+        int posted = 0;
+        for (int start = 0; start < payers.length; start += MAX_LOCKED_PAYERS) {
+            Map<Account, Position> paying = new IdentityHashMap<>();
+            Position[] locked = new Position[Math.min(MAX_LOCKED_PAYERS, payers.length - start)];
+            for (int i = 0; i < locked.length; i++) {
+                locked[i] = new Position(payers[start + i]);
+                paying.put(locked[i].account, locked[i]);
+            }
+            Map<Account, Position> receiving = new IdentityHashMap<>();
+            for (int row = 0; row < size; row++) {
+                Position source = rejected[row] == null ? paying.get(sources[row]) : null;
+                if (source == null) {
+                    continue;
+                }
+                source.add(row);
+                Position target = paying.get(targets[row]);
+                if (target == null) {
+                    target = receiving.computeIfAbsent(targets[row], Position::new);
+                }
+                target.add(row);
+            }
+
+            withLocks(locked, 0, () -> settle(locked, sources, rejected));
+            for (Position payer : locked) {
+                posted += payer.rowCount > 0 ? 1 : 0;
+                for (int i = 0; i < payer.rowCount; i++) {
+                    int row = payer.rows[i];
+                    if (sources[row] == payer.account) {
+                        applied++;
+                        moved += amounts[row];
+                    }
+                }
+            }
+            for (Position target : receiving.values()) {
+                synchronized (target.account) {
+                    post(target, sources, rejected);
+                }
+                posted += target.rowCount > 0 ? 1 : 0;
+            }
+        }
+
+        List<Rejection> rejections = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            if (rejected[row] != null) {
+                rejections.add(new Rejection(row, rejected[row]));
+            }
+        }
+        return new Result(applied, moved, posted, rejections);
+    }
+
+    // Null if the row can be attempted, else why not
+    private String resolve(int row, Function<String, Account> lookup, Account[] sources, Account[] targets) {
+        if (amounts[row] <= 0) {
+            return "Transfer amount must be greater than zero";
+        }
+        if (amounts[row] > Money.MAX_PAISE) {
+            return Money.OUT_OF_RANGE;
+        }
+        Account source = sources[row] = lookup.apply(from[row]);
+        Account target = targets[row] = lookup.apply(to[row]);
+        if (source == null || target == null) {
+            return "Account not found: " + (source == null ? from[row] : to[row]);
+        }
+        if (source == target) {
+            return "Source and target are the same account";
+        }
+        if (!source.isActive() || !target.isActive()) {
+            return "Account is inactive: " + (source.isActive() ? to[row] : from[row]);
+        }
+        return null;
+    }
+
+    // Takes the payers' monitors in order, then runs 'body'
+    private static void withLocks(Position[] locked, int next, Runnable body) {
+        if (next == locked.length) {
+            body.run();
+            return;
+        }
+        synchronized (locked[next].account) {
+            withLocks(locked, next + 1, body);
+        }
+    }
+
+    // Payers' monitors are held: reject the rows of payers that cannot cover their
+    // net outflow until none fails, then post every payer
+    private void settle(Position[] payers, Account[] sources, String[] rejected) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Position payer : payers) {
+                if (payer.failure != null) {
+                    continue;
+                }
+                long debit = 0;
+                long credit = 0;
+                try {
+                    for (int i = 0; i < payer.rowCount; i++) {
+                        int row = payer.rows[i];
+                        if (rejected[row] == null) {
+                            if (sources[row] == payer.account) {
+                                debit = Math.addExact(debit, amounts[row]);
+                            } else {
+                                credit = Math.addExact(credit, amounts[row]);
+                            }
+                        }
+                    }
+                    payer.failure = payer.account.checkBatchDebit(debit, credit);
+                } catch (ArithmeticException e) {
+                    payer.failure = "Batch total of " + payer.account.getAccountNumber() + " is out of range";
+                }
+                if (payer.failure != null) {
+                    for (int i = 0; i < payer.rowCount; i++) {
+                        int row = payer.rows[i];
+                        if (rejected[row] == null && sources[row] == payer.account) {
+                            rejected[row] = payer.failure;
+                        }
+                    }
+                    changed = true; // its payees in this group lose those credits
+                }
+            }
+        }
+        for (Position payer : payers) {
+            post(payer, sources, rejected); // a failed payer still receives
+        }
+    }
+
+    // Posts the account's rows that were not rejected; caller holds its monitor
+    private void post(Position position, Account[] sources, String[] rejected) {
+        Account account = position.account;
+        int live = 0;
+        for (int i = 0; i < position.rowCount; i++) {
+            int row = position.rows[i];
+            if (rejected[row] == null) {
+                position.rows[live++] = row;
+            }
+        }
+        position.rowCount = live;
+        if (live == 0) {
+            return;
+        }
+        String[] counterparties = new String[live];
+        long[] signed = new long[live];
+        for (int i = 0; i < live; i++) {
+            int row = position.rows[i];
+            boolean outgoing = sources[row] == account;
+            counterparties[i] = outgoing ? to[row] : from[row];
+            signed[i] = outgoing ? -amounts[row] : amounts[row];
+        }
+        account.postBatch(counterparties, signed, live);
+    }
+}
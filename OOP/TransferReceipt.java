@@ -0,0 +1,39 @@
+// ================== TRANSFER RECEIPT ==================
+// Outcome of an idempotent transfer (Bank.transfer). Business rejections are
+// part of the outcome rather than exceptions, so a retry with the same key can
+// be answered from the dedupe cache with exactly what the first call returned.
+final class TransferReceipt {
+    enum Status {
+        COMPLETED,
+        INSUFFICIENT_BALANCE,
+        DAILY_LIMIT_EXCEEDED,
+        INVALID_AMOUNT,
+        REVERSED,           // the withdrawal was made and given back because the deposit failed
+        ACCOUNT_NOT_FOUND,
+        ACCOUNT_INACTIVE,   // either account is closed; nothing was done
+        IN_PROGRESS,        // the first call with this key has not finished; retry later
+        KEY_REUSED          // the key was used for a different transfer; nothing was done
+    }
+
+    final String idempotencyKey;
+    final Status status;
+    final String message;
+    final boolean replayed; // answered from the dedupe cache, nothing was executed
+
+    TransferReceipt(String idempotencyKey, Status status, String message, boolean replayed) {
+        this.idempotencyKey = idempotencyKey;
+        this.status = status;
+        this.message = message;
+        this.replayed = replayed;
+    }
+
+    boolean isCompleted() {
+        return status == Status.COMPLETED;
+    }
+
+    @Override
+    public String toString() {
+        return (status == Status.COMPLETED ? "✓ " : "❌ ") + status + (message != null ? ": " + message : "")
+            + (replayed ? " (duplicate request, not executed again)" : "");
+    }
+}
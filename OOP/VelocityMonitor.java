@@ -0,0 +1,295 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// ================== VELOCITY / FRAUD MONITOR ==================
+// Event-bus stage that sees every recorded transaction (TRANSACTION_RECORDED)
+// and keeps sliding-window aggregates of money leaving each account:
+//
+//   count          - withdrawals (a transfer records one as well)
+//   sum            - their total amount
+//   transfers      - TRANSFER_OUT_TO_ entries
+//   counterparties - distinct accounts transferred to
+//
+// and raises an alert when any of them crosses its threshold, e.g. a burst of
+// TRANSFER_OUT_TO_ entries. Exact per-account state would grow with the number
+// of accounts, so the aggregates are count-min sketches (estimates that never
+// undercount), one per sub-window; the window slides by dropping its oldest
+// sub-window. Distinct counterparties are counted the first time an
+// (account, counterparty) pair shows up in the window, using a Bloom filter
+// per sub-window, so a pair whose last sighting expired is counted again.
+// Memory is fixed by the sketch width, whatever the number of accounts.
+//
+// Runs on the event-bus thread, so transactions only pay for the publish;
+// when the bus queue is full it runs on the publisher instead (one thread at a
+// time either way), so no transaction escapes it.
+final class VelocityMonitor implements EventBus.Subscriber {
+    private static final int DEPTH = 4;
+    private static final int SUB_WINDOWS = 6;
+    private static final int BLOOM_HASHES = 3;
+    private static final long[] SEEDS = {
+        0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+    private static final int RECENT_ALERTS = 1000;
+
+    static final VelocityMonitor GLOBAL = fromSystemProperties();
+
+    // ---------------- Alerts ----------------
+
+    enum Reason { TRANSFER_BURST, OUTFLOW_COUNT, OUTFLOW_AMOUNT, MANY_COUNTERPARTIES }
+
+    static final class Alert {
+        final Reason reason;
+        final String accountNumber;
+        final long estimate;   // count, paise or counterparties, depending on the reason
+        final long epochMillis;
+
+        Alert(Reason reason, String accountNumber, long estimate, long epochMillis) {
+            this.reason = reason;
+            this.accountNumber = accountNumber;
+            this.estimate = estimate;
+            this.epochMillis = epochMillis;
+        }
+
+        @Override
+        public String toString() {
+            String value = reason == Reason.OUTFLOW_AMOUNT ? "Rs. " + Money.format(estimate) : String.valueOf(estimate);
+            return "⚠ Velocity alert: " + accountNumber + " " + reason + " (" + value + " in window)";
+        }
+    }
+
+    // ---------------- Configuration ----------------
+
+    private final long subWindowMillis;
+    private final int widthMask;
+    private final int bloomMask;
+    private final long maxTransfers;
+    private final long maxOutflows;
+    private final long maxOutflowPaise;
+    private final long maxCounterparties;
+    private final boolean printAlerts;
+
+    // ---------------- Sketches (one per sub-window, reused as the window slides) ----------------
+
+    private final int[][][] transfers = new int[SUB_WINDOWS][][];
+    private final int[][][] outflows = new int[SUB_WINDOWS][][];
+    private final long[][][] outflowPaise = new long[SUB_WINDOWS][][];
+    private final int[][][] counterparties = new int[SUB_WINDOWS][][];
+    private final long[][] pairsSeen = new long[SUB_WINDOWS][];
+    private long currentSlot = Long.MIN_VALUE;
+
+    private final ArrayDeque<Alert> recent = new ArrayDeque<>(); // guarded by "this"
+    private long alertCount;                                       // guarded by "this"
+
+    // width: sketch columns per row (rounded up to a power of two); error is about
+    // e / width of the window's traffic
+    VelocityMonitor(long windowMillis, int width, long maxTransfers, long maxOutflows,
+                    long maxOutflowPaise, long maxCounterparties, boolean printAlerts) {
+        this.subWindowMillis = Math.max(1, windowMillis / SUB_WINDOWS);
+        int columns = Integer.highestOneBit(Math.max(64, width - 1) << 1);
+        this.widthMask = columns - 1;
+        this.bloomMask = (columns << 4) - 1; // 16 bits per expected pair
+        this.maxTransfers = maxTransfers;
+        this.maxOutflows = maxOutflows;
+        this.maxOutflowPaise = maxOutflowPaise;
+        this.maxCounterparties = maxCounterparties;
+        this.printAlerts = printAlerts;
+        for (int s = 0; s < SUB_WINDOWS; s++) {
+            transfers[s] = new int[DEPTH][columns];
+            outflows[s] = new int[DEPTH][columns];
+            outflowPaise[s] = new long[DEPTH][columns];
+            counterparties[s] = new int[DEPTH][columns];
+            pairsSeen[s] = new long[(bloomMask + 1) >>> 6];
+        }
+    }
+
+    // -Dbank.velocityWindowSeconds (60), -Dbank.velocitySketchWidth (16384),
+    // -Dbank.velocityMaxTransfers (10), -Dbank.velocityMaxOutflows (20),
+    // -Dbank.velocityMaxOutflowRupees (500000), -Dbank.velocityMaxCounterparties (5)
+    static VelocityMonitor fromSystemProperties() {
+        return new VelocityMonitor(
+            Long.getLong("bank.velocityWindowSeconds", 60) * 1000,
+            Integer.getInteger("bank.velocitySketchWidth", 1 << 14),
+            Long.getLong("bank.velocityMaxTransfers", 10),
+            Long.getLong("bank.velocityMaxOutflows", 20),
+            Money.ofStoredRupees(Long.getLong("bank.velocityMaxOutflowRupees", 500000)),
+            Long.getLong("bank.velocityMaxCounterparties", 5),
+            true);
+    }
+
+    @Override
+    public boolean wants(BankEvent.Type type) {
+        return type == BankEvent.Type.TRANSACTION_RECORDED;
+    }
+
+    // A missed withdrawal would hide exactly the burst this is here to catch
+    @Override
+    public boolean lossless() {
+        return true;
+    }
+
+    @Override
+    public void onEvents(List<BankEvent> batch) {
+        for (BankEvent event : batch) {
+            if (event.type == BankEvent.Type.TRANSACTION_RECORDED) {
+                onTransaction(event);
+            }
+        }
+    }
+
+    private void onTransaction(BankEvent event) {
+        byte code = (byte) event.detail;
+        if (code != TransactionTypes.WITHDRAWAL && code != TransactionTypes.TRANSFER_OUT) {
+            return;
+        }
+        advance(event.epochMillis);
+        int slot = (int) Math.floorMod(currentSlot, (long) SUB_WINDOWS);
+        long key = keyOf(event.accountNumber);
+
+        if (code == TransactionTypes.WITHDRAWAL) {
+            long count = add(outflows[slot], outflows, key, 1);
+            crossed(Reason.OUTFLOW_COUNT, event, count, 1, maxOutflows);
+            long paise = add(outflowPaise[slot], outflowPaise, key, event.amount);
+            crossed(Reason.OUTFLOW_AMOUNT, event, paise, event.amount, maxOutflowPaise);
+        } else {
+            long bursts = add(transfers[slot], transfers, key, 1);
+            crossed(Reason.TRANSFER_BURST, event, bursts, 1, maxTransfers);
+            long pair = mix(key) ^ keyOf(event.counterparty);
+            if (!pairSeen(pair)) {
+                markPair(pairsSeen[slot], pair);
+                long distinct = add(counterparties[slot], counterparties, key, 1);
+                crossed(Reason.MANY_COUNTERPARTIES, event, distinct, 1, maxCounterparties);
+            }
+        }
+    }
+
+    // ---------------- Window ----------------
+
+    // Moves to the sub-window of 'millis', clearing the ones that fell out of the window
+    private void advance(long millis) {
+        long slot = Math.floorDiv(millis, subWindowMillis);
+        if (slot <= currentSlot) {
+            return; // same sub-window, or a late event that is counted in the current one
+        }
+        long stale = currentSlot == Long.MIN_VALUE ? SUB_WINDOWS : Math.min(SUB_WINDOWS, slot - currentSlot);
+        for (long s = slot - stale + 1; s <= slot; s++) {
+            int index = (int) Math.floorMod(s, (long) SUB_WINDOWS);
+            clear(transfers[index]);
+            clear(outflows[index]);
+            for (long[] row : outflowPaise[index]) Arrays.fill(row, 0);
+            clear(counterparties[index]);
+            Arrays.fill(pairsSeen[index], 0);
+        }
+        currentSlot = slot;
+    }
+
+    private static void clear(int[][] sketch) {
+        for (int[] row : sketch) Arrays.fill(row, 0);
+    }
+
+    // ---------------- Count-min sketch ----------------
+
+    // Adds to the current sub-window and returns the estimate over the whole window
+    private long add(int[][] current, int[][][] window, long key, int delta) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int column = column(key, row);
+            current[row][column] += delta;
+            long total = 0;
+            for (int[][] sketch : window) {
+                total += sketch[row][column];
+            }
+            estimate = Math.min(estimate, total);
+        }
+        return estimate;
+    }
+
+    private long add(long[][] current, long[][][] window, long key, long delta) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int column = column(key, row);
+            current[row][column] += delta;
+            long total = 0;
+            for (long[][] sketch : window) {
+                total += sketch[row][column];
+            }
+            estimate = Math.min(estimate, total);
+        }
+        return estimate;
+    }
+
+    private int column(long key, int row) {
+        return (int) mix(key ^ SEEDS[row]) & widthMask;
+    }
+
+    // ---------------- Bloom filter of (account, counterparty) pairs ----------------
+
+    private boolean pairSeen(long pair) {
+        for (long[] bits : pairsSeen) {
+            if (containsPair(bits, pair)) return true;
+        }
+        return false;
+    }
+
+    private boolean containsPair(long[] bits, long pair) {
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = (int) mix(pair ^ SEEDS[i]) & bloomMask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    private void markPair(long[] bits, long pair) {
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = (int) mix(pair ^ SEEDS[i]) & bloomMask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    // Standard account numbers hash by their numeric part, anything else by its text
+    private static long keyOf(String accountNumber) {
+        if (accountNumber == null) return 0;
+        int id = AccountNumberAllocator.parse(accountNumber, 0);
+        return id >= 0 ? id : accountNumber.hashCode() | (1L << 32);
+    }
+
+    // 64-bit finaliser from MurmurHash3
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // ---------------- Alerting ----------------
+
+    // Alerts once, on the update that takes the estimate from below the limit to at or above it
+    private void crossed(Reason reason, BankEvent event, long estimate, long added, long limit) {
+        if (limit <= 0 || estimate < limit || estimate - added >= limit) {
+            return;
+        }
+        Alert alert = new Alert(reason, event.accountNumber, estimate, event.epochMillis);
+        synchronized (this) {
+            alertCount++;
+            if (recent.size() == RECENT_ALERTS) {
+                recent.removeFirst();
+            }
+            recent.addLast(alert);
+        }
+        if (printAlerts) {
+            System.out.println(alert);
+        }
+    }
+
+    synchronized long alertCount() {
+        return alertCount;
+    }
+
+    // The most recent alerts, oldest first
+    synchronized List<Alert> recentAlerts() {
+        return new ArrayList<>(recent);
+    }
+}
@@ -0,0 +1,283 @@
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+// ================== WITHDRAWAL LIMIT WINDOWS ==================
+// Tracks how much an account has withdrawn inside the window its daily limit
+// applies to. Checks and updates are O(1) and allocation-free; the owning
+// Account's monitor guards the state.
+//
+//   CALENDAR_DAY - resets at local midnight (the original behaviour)
+//   ROLLING_24H  - counts the last 24 hours, so a limit used just before
+//                  midnight is still used just after it
+//
+// The kind for new accounts comes from -Dbank.withdrawalWindow (default CALENDAR_DAY).
+abstract class WithdrawalWindow {
+    enum Kind { CALENDAR_DAY, ROLLING_24H }
+
+    static final Kind DEFAULT_KIND = Kind.valueOf(
+        System.getProperty("bank.withdrawalWindow", "CALENDAR_DAY").toUpperCase());
+
+    // Amount withdrawn inside the window that contains 'nowMillis'
+    abstract long used(long nowMillis);
+
+    // Counts a withdrawal made at 'millis' (replayed withdrawals may be in the past)
+    abstract void record(long millis, long amount);
+
+    // How the window reads in messages: "Today" or "in Last 24 Hours"
+    abstract String label();
+
+    static WithdrawalWindow create(Kind kind) {
+        return kind == Kind.ROLLING_24H ? new RollingWindow() : new CalendarDayWindow();
+    }
+
+    abstract Kind kind();
+
+    // Snapshot form: the kind, then the window's own state
+    abstract void writeState(BankSnapshot.Out out) throws IOException;
+    abstract void readState(BankSnapshot.In in) throws IOException;
+
+    static void writeSnapshot(WithdrawalWindow window, BankSnapshot.Out out) throws IOException {
+        out.putByte((byte) window.kind().ordinal());
+        window.writeState(out);
+    }
+
+    static WithdrawalWindow readSnapshot(BankSnapshot.In in) throws IOException {
+        WithdrawalWindow window = create(Kind.values()[in.getByte()]);
+        window.readState(in);
+        return window;
+    }
+
+    // ---------------- Calendar day ----------------
+
+    static final class CalendarDayWindow extends WithdrawalWindow {
+        private static final ZoneId ZONE = ZoneId.systemDefault();
+
+        private long dayStartMillis;
+        private long dayEndMillis; // 0 until the first call, so the first call always rolls
+        private long withdrawn;
+
+        @Override
+        long used(long nowMillis) {
+            roll(nowMillis);
+            return withdrawn;
+        }
+
+        @Override
+        void record(long millis, long amount) {
+            roll(millis);
+            if (millis >= dayStartMillis) {
+                withdrawn += amount;
+            }
+        }
+
+        // The common case is one comparison; the zone maths runs once per day
+        private void roll(long nowMillis) {
+            if (nowMillis < dayEndMillis) {
+                return;
+            }
+            LocalDate today = Instant.ofEpochMilli(nowMillis).atZone(ZONE).toLocalDate();
+            withdrawn = 0;
+            dayStartMillis = today.atStartOfDay(ZONE).toInstant().toEpochMilli();
+            dayEndMillis = today.plusDays(1).atStartOfDay(ZONE).toInstant().toEpochMilli();
+        }
+
+        @Override
+        String label() {
+            return "Today";
+        }
+
+        @Override
+        Kind kind() {
+            return Kind.CALENDAR_DAY;
+        }
+
+        @Override
+        void writeState(BankSnapshot.Out out) throws IOException {
+            out.putLong(dayStartMillis);
+            out.putLong(dayEndMillis);
+            out.putLong(withdrawn);
+        }
+
+        @Override
+        void readState(BankSnapshot.In in) throws IOException {
+            dayStartMillis = in.getLong();
+            dayEndMillis = in.getLong();
+            withdrawn = in.getLong();
+        }
+    }
+
+    // ---------------- Calendar day, kept in an AccountTable row ----------------
+
+    // Moves a calendar-day window's state into the account's off-heap row; a rolling
+    // window keeps its ring on the heap
+    static WithdrawalWindow moveOffHeap(WithdrawalWindow window, AccountTable table, int row) {
+        if (!(window instanceof CalendarDayWindow)) {
+            return window;
+        }
+        CalendarDayWindow day = (CalendarDayWindow) window;
+        table.putLong(row, AccountTable.DAY_START, day.dayStartMillis);
+        table.putLong(row, AccountTable.DAY_END, day.dayEndMillis);
+        table.putLong(row, AccountTable.WITHDRAWN, day.withdrawn);
+        return new OffHeapDayWindow(table, row);
+    }
+
+    // Same rules and snapshot layout as CalendarDayWindow
+    static final class OffHeapDayWindow extends WithdrawalWindow {
+        private final AccountTable table;
+        private final int row;
+
+        OffHeapDayWindow(AccountTable table, int row) {
+            this.table = table;
+            this.row = row;
+        }
+
+        @Override
+        long used(long nowMillis) {
+            roll(nowMillis);
+            return table.getLong(row, AccountTable.WITHDRAWN);
+        }
+
+        @Override
+        void record(long millis, long amount) {
+            roll(millis);
+            if (millis >= table.getLong(row, AccountTable.DAY_START)) {
+                table.putLong(row, AccountTable.WITHDRAWN, table.getLong(row, AccountTable.WITHDRAWN) + amount);
+            }
+        }
+
+        private void roll(long nowMillis) {
+            if (nowMillis < table.getLong(row, AccountTable.DAY_END)) {
+                return;
+            }
+            LocalDate today = Instant.ofEpochMilli(nowMillis).atZone(CalendarDayWindow.ZONE).toLocalDate();
+            table.putLong(row, AccountTable.WITHDRAWN, 0);
+            table.putLong(row, AccountTable.DAY_START, today.atStartOfDay(CalendarDayWindow.ZONE).toInstant().toEpochMilli());
+            table.putLong(row, AccountTable.DAY_END,
+                          today.plusDays(1).atStartOfDay(CalendarDayWindow.ZONE).toInstant().toEpochMilli());
+        }
+
+        @Override
+        String label() {
+            return "Today";
+        }
+
+        @Override
+        Kind kind() {
+            return Kind.CALENDAR_DAY;
+        }
+
+        @Override
+        void writeState(BankSnapshot.Out out) throws IOException {
+            out.putLong(table.getLong(row, AccountTable.DAY_START));
+            out.putLong(table.getLong(row, AccountTable.DAY_END));
+            out.putLong(table.getLong(row, AccountTable.WITHDRAWN));
+        }
+
+        @Override
+        void readState(BankSnapshot.In in) throws IOException {
+            table.putLong(row, AccountTable.DAY_START, in.getLong());
+            table.putLong(row, AccountTable.DAY_END, in.getLong());
+            table.putLong(row, AccountTable.WITHDRAWN, in.getLong());
+        }
+    }
+
+    // ---------------- Rolling 24 hours ----------------
+
+    // Ring buffer of time buckets plus a running total. Moving forward clears the
+    // buckets that fell out of the window, so a check is O(1) amortized and never
+    // more than one pass over the ring. There is one extra bucket, so an amount
+    // leaves the window between 24 hours and 24 hours + one bucket after it was
+    // withdrawn - never early. The ring is allocated on the first withdrawal.
+    static final class RollingWindow extends WithdrawalWindow {
+        static final long WINDOW_MILLIS = 24L * 60 * 60 * 1000;
+        private static final long BUCKET_MILLIS = WINDOW_MILLIS
+            / Math.max(1, Integer.getInteger("bank.rollingWindowBuckets", 24));
+
+        private long[] buckets;
+        private long headBucket; // absolute index (millis / BUCKET_MILLIS) of the newest bucket
+        private long total;
+
+        @Override
+        long used(long nowMillis) {
+            if (buckets == null) {
+                return 0;
+            }
+            advance(nowMillis / BUCKET_MILLIS);
+            return total;
+        }
+
+        @Override
+        void record(long millis, long amount) {
+            long bucket = millis / BUCKET_MILLIS;
+            if (buckets == null) {
+                buckets = new long[(int) (WINDOW_MILLIS / BUCKET_MILLIS) + 1];
+                headBucket = bucket;
+            }
+            advance(bucket);
+            if (headBucket - bucket >= buckets.length) {
+                return; // older than the whole window
+            }
+            buckets[(int) (bucket % buckets.length)] += amount;
+            total += amount;
+        }
+
+        private void advance(long bucket) {
+            long steps = bucket - headBucket;
+            if (steps <= 0) {
+                return;
+            }
+            if (steps >= buckets.length) {
+                Arrays.fill(buckets, 0);
+                total = 0;
+            } else {
+                for (long b = headBucket + 1; b <= bucket; b++) {
+                    int slot = (int) (b % buckets.length);
+                    total -= buckets[slot];
+                    buckets[slot] = 0;
+                }
+            }
+            headBucket = bucket;
+        }
+
+        @Override
+        String label() {
+            return "in Last 24 Hours";
+        }
+
+        @Override
+        Kind kind() {
+            return Kind.ROLLING_24H;
+        }
+
+        @Override
+        void writeState(BankSnapshot.Out out) throws IOException {
+            out.putInt(buckets == null ? 0 : buckets.length);
+            if (buckets != null) {
+                out.putLongs(buckets, 0, buckets.length);
+                out.putLong(headBucket);
+                out.putLong(total);
+            }
+        }
+
+        @Override
+        void readState(BankSnapshot.In in) throws IOException {
+            int length = in.getInt();
+            if (length == 0) {
+                return;
+            }
+            long[] saved = new long[length];
+            in.getLongs(saved, 0, length);
+            long savedHead = in.getLong();
+            long savedTotal = in.getLong();
+            if (length == (int) (WINDOW_MILLIS / BUCKET_MILLIS) + 1) {
+                buckets = saved;
+                headBucket = savedHead;
+                total = savedTotal;
+            }
+            // Written with a different bucket size: start empty rather than misread it
+        }
+    }
+}